@@ -0,0 +1,65 @@
+package api;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import exception.ManagerSaveException;
+import service.FileBackedTaskManager;
+import service.SnapshotFormat;
+import service.TaskManager;
+
+import java.io.IOException;
+import java.util.Objects;
+
+public class AdminHandler extends BaseHttpHandler {
+
+    public AdminHandler(TaskManager taskManager, Gson gson) {
+        super(taskManager, gson);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Endpoint endpoint = getEndpoint(path, exchange.getRequestMethod());
+        if (Objects.requireNonNull(endpoint) == Endpoint.GET_BACKUP) {
+            handleGetBackup(exchange);
+            return;
+        }
+        try {
+            sendResponse(exchange, "Method not allowed.", 405);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    //снимок отдаётся потоком без заранее известной длины, запись в менеджер при этом не останавливается
+    private void handleGetBackup(HttpExchange exchange) throws IOException {
+        if (!(taskManager instanceof FileBackedTaskManager)) {
+            sendResponse(exchange, "Backup is available only for a file-backed manager.", 501);
+            exchange.close();
+            return;
+        }
+        FileBackedTaskManager fileBackedManager = (FileBackedTaskManager) taskManager;
+        String fileName = (fileBackedManager.getSnapshotFormat() == SnapshotFormat.BINARY) ? "backup.bin" : "backup.csv";
+        exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+        exchange.getResponseHeaders().add("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        exchange.sendResponseHeaders(200, 0);
+        try {
+            fileBackedManager.backup(exchange.getResponseBody());
+        } catch (ManagerSaveException e) {
+            //статус уже отправлен. Обмен не закрывается: закрытие дописало бы последний блок ответа
+            //и обрезанная копия выглядела бы целой. Исключение заставит сервер разорвать соединение
+            throw new IOException(e.getMessage(), e);
+        }
+        exchange.close();
+    }
+
+    private Endpoint getEndpoint(String requestPath, String method) {
+        String[] pathParts = requestPath.split("/");
+
+        if (method.equals("GET") && pathParts.length == 3 && pathParts[1].equals("admin")
+                && pathParts[2].equals("backup")) {
+            return Endpoint.GET_BACKUP;
+        }
+        return Endpoint.UNKNOWN;
+    }
+}
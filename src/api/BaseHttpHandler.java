@@ -3,18 +3,28 @@ package api;
 import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import exception.RequestParameterException;
 import service.TaskManager;
 
 import java.io.IOException;
+import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public abstract class BaseHttpHandler implements HttpHandler {
 
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+    private static final int DEFAULT_PAGE_LIMIT = 100;
 
     protected final Gson gson;
     protected final TaskManager taskManager;
+    //последний сериализованный список: менеджер со снимками отдаёт один и тот же объект, пока данные не менялись
+    private volatile CachedJson cachedJson;
 
     BaseHttpHandler(TaskManager taskManager, Gson gson) {
         this.taskManager = taskManager;
@@ -52,10 +62,87 @@ public abstract class BaseHttpHandler implements HttpHandler {
         exchange.close();
     }
 
+    protected String listToJson(List<?> list) {
+        CachedJson cached = cachedJson;
+        if (cached != null && cached.list == list) {
+            return cached.json;
+        }
+        String json = gson.toJson(list);
+        cachedJson = new CachedJson(list, json);
+        return json;
+    }
+
+    public Map<String, String> getQueryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            String[] parts = pair.split("=", 2);
+            parameters.put(URLDecoder.decode(parts[0], DEFAULT_CHARSET),
+                    (parts.length == 2) ? URLDecoder.decode(parts[1], DEFAULT_CHARSET) : "");
+        }
+        return parameters;
+    }
+
+    public boolean isPageRequested(Map<String, String> parameters) {
+        return parameters.containsKey("after") || parameters.containsKey("limit");
+    }
+
+    public int getPageAfter(Map<String, String> parameters) {
+        return getIntParameter(parameters, "after", 0);
+    }
+
+    public int getPageLimit(Map<String, String> parameters) {
+        int limit = getIntParameter(parameters, "limit", DEFAULT_PAGE_LIMIT);
+        if (limit <= 0) {
+            throw new RequestParameterException("Параметр limit должен быть больше нуля.");
+        }
+        return limit;
+    }
+
+    public boolean isWindowRequested(Map<String, String> parameters) {
+        return parameters.containsKey("from") || parameters.containsKey("to");
+    }
+
+    //время в параметрах запроса передаётся в том же формате, что и в теле задачи
+    public LocalDateTime getDateTimeParameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new RequestParameterException(String.format("Не передан параметр %s.", name));
+        }
+        return LocalDateTime.parse(value, LocalDateTimeTypeAdapter.DATE_TIME_FORMATTER);
+    }
+
+    public Duration getDurationParameter(Map<String, String> parameters, String name) {
+        if (!parameters.containsKey(name)) {
+            throw new RequestParameterException(String.format("Не передан параметр %s.", name));
+        }
+        int minutes = getIntParameter(parameters, name, 0);
+        if (minutes < 0) {
+            throw new RequestParameterException(String.format("Параметр %s не может быть отрицательным.", name));
+        }
+        return Duration.ofMinutes(minutes);
+    }
+
+    private int getIntParameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new RequestParameterException(String.format("Параметр %s должен быть целым числом.", name));
+        }
+    }
+
     public int getTaskId(String requestPath) {
         String[] pathParts = requestPath.split("/");
         return Integer.parseInt(pathParts[2]);
     }
-}
-
 
+    private record CachedJson(List<?> list, String json) {
+    }
+}
@@ -0,0 +1,122 @@
+package api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.sun.net.httpserver.HttpExchange;
+import exception.ManagerAddTaskException;
+import exception.ReadOnlyManagerException;
+import exception.RequestParameterException;
+import exception.TaskNotFoundException;
+import model.Epic;
+import model.Operation;
+import model.OperationType;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+import service.TaskManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+//пакетное создание и обновление: тело - массив операций вида
+//{"type": "CREATE", "taskType": "SUBTASK", "task": {...}}
+public class BatchHandler extends BaseHttpHandler {
+
+    public BatchHandler(TaskManager taskManager, Gson gson) {
+        super(taskManager, gson);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Endpoint endpoint = getEndpoint(path, exchange.getRequestMethod());
+        try {
+            switch (endpoint) {
+                case POST_BATCH:
+                    handlePostBatch(exchange);
+                    break;
+                default:
+                    sendResponse(exchange, "Method not allowed.", 405);
+            }
+        } catch (ManagerAddTaskException e) {
+            sendResponse(exchange, e.getMessage(), 406);
+        } catch (TaskNotFoundException e) {
+            sendResponse(exchange, e.getMessage(), 404);
+        } catch (ReadOnlyManagerException e) {
+            sendResponse(exchange, e.getMessage(), 405);
+        } catch (DateTimeParseException | JsonSyntaxException | RequestParameterException e) {
+            sendResponse(exchange, e.getMessage(), 400);
+        } catch (Exception e) {
+            sendResponse(exchange, e.getMessage(), 500);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Endpoint getEndpoint(String requestPath, String method) {
+        String[] pathParts = requestPath.split("/");
+
+        if (method.equals("POST") && pathParts.length == 2 && pathParts[1].equals("batch")) {
+            return Endpoint.POST_BATCH;
+        }
+        return Endpoint.UNKNOWN;
+    }
+
+    private void handlePostBatch(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        List<Task> result = taskManager.applyBatch(parseOperations(body));
+        sendText(exchange, gson.toJson(result), 201);
+    }
+
+    private List<Operation> parseOperations(String body) {
+        JsonElement root = JsonParser.parseString(body);
+        if (!root.isJsonArray()) {
+            throw new RequestParameterException("Тело запроса должно быть массивом операций.");
+        }
+        List<Operation> operations = new ArrayList<>();
+        for (JsonElement element : root.getAsJsonArray()) {
+            if (!element.isJsonObject()) {
+                throw new RequestParameterException("Операция пакета должна быть объектом.");
+            }
+            JsonObject object = element.getAsJsonObject();
+            OperationType type = parseEnum(OperationType.class, object, "type");
+            TaskType taskType = parseEnum(TaskType.class, object, "taskType");
+            if (!object.has("task") || !object.get("task").isJsonObject()) {
+                throw new RequestParameterException("В операции пакета не передана задача.");
+            }
+            Task task = gson.fromJson(object.get("task"), getTaskClass(taskType));
+            operations.add(new Operation(type, task));
+        }
+        return operations;
+    }
+
+    private <T extends Enum<T>> T parseEnum(Class<T> enumClass, JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        if (value == null || !value.isJsonPrimitive()) {
+            throw new RequestParameterException(String.format("В операции пакета не передано поле %s.", name));
+        }
+        try {
+            return Enum.valueOf(enumClass, value.getAsString());
+        } catch (IllegalArgumentException e) {
+            throw new RequestParameterException(String.format("Неизвестное значение поля %s: %s.", name,
+                    value.getAsString()));
+        }
+    }
+
+    private Class<? extends Task> getTaskClass(TaskType taskType) {
+        switch (taskType) {
+            case EPIC:
+                return Epic.class;
+            case SUBTASK:
+                return Subtask.class;
+            default:
+                return Task.class;
+        }
+    }
+}
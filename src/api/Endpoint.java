@@ -16,5 +16,8 @@ public enum Endpoint {
     DELETE_EPIC,
     GET_HISTORY,
     GET_PRIORITIZED,
+    GET_FREE_SLOT,
+    POST_BATCH,
+    GET_BACKUP,
     UNKNOWN
 }
@@ -4,6 +4,8 @@ import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import com.sun.net.httpserver.HttpExchange;
 import exception.ManagerAddTaskException;
+import exception.ReadOnlyManagerException;
+import exception.RequestParameterException;
 import exception.TaskNotFoundException;
 import model.Epic;
 import model.Subtask;
@@ -14,6 +16,7 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class EpicsHandler extends BaseHttpHandler {
@@ -50,7 +53,9 @@ public class EpicsHandler extends BaseHttpHandler {
             sendResponse(exchange, e.getMessage(), 406);
         } catch (TaskNotFoundException e) {
             sendResponse(exchange, e.getMessage(), 404);
-        } catch (DateTimeParseException | JsonSyntaxException e) {
+        } catch (ReadOnlyManagerException e) {
+            sendResponse(exchange, e.getMessage(), 405);
+        } catch (DateTimeParseException | JsonSyntaxException | RequestParameterException e) {
             sendResponse(exchange, e.getMessage(), 400);
         } catch (Exception e) {
             sendResponse(exchange, e.getMessage(), 500);
@@ -82,9 +87,15 @@ public class EpicsHandler extends BaseHttpHandler {
     }
 
     private void handleGetEpics(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = getQueryParameters(exchange);
+        if (isPageRequested(parameters)) {
+            List<Epic> page = taskManager.getEpics(getPageAfter(parameters), getPageLimit(parameters));
+            sendText(exchange, gson.toJson(page), 200);
+            return;
+        }
         List<Epic> epicsList = taskManager.getAllEpics();
 
-        String jsonString = gson.toJson(epicsList);
+        String jsonString = listToJson(epicsList);
         sendText(exchange, jsonString, 200);
     }
 
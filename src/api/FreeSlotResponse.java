@@ -0,0 +1,13 @@
+package api;
+
+import java.time.LocalDateTime;
+
+public class FreeSlotResponse {
+    LocalDateTime startTime;
+    LocalDateTime endTime;
+
+    public FreeSlotResponse(LocalDateTime startTime, LocalDateTime endTime) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+}
@@ -2,8 +2,11 @@ package api;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.sun.net.httpserver.*;
+import service.ConcurrentTaskManager;
 import service.FileBackedTaskManager;
-//import service.Managers;
+import service.Managers;
+import service.PersistenceMode;
+import service.ReplicaTaskManager;
 import service.TaskManager;
 
 import java.io.File;
@@ -11,35 +14,84 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class HttpTaskServer {
+    private static final int DEFAULT_PORT = 8080;
 
     protected TaskManager taskManager;
     protected HttpServer httpServer;
     protected Gson gson;
+    //пул обработчиков, null - запросы обрабатываются по одному в потоке сервера
+    private final ExecutorService executor;
 
     public HttpTaskServer(TaskManager taskManager) throws IOException {
+        this(taskManager, DEFAULT_PORT);
+    }
+
+    public HttpTaskServer(TaskManager taskManager, int port) throws IOException {
         this.taskManager = taskManager;
         gson = createGson();
-        httpServer = createHttpServer(this.taskManager, gson);
+        httpServer = createHttpServer(this.taskManager, gson, port);
+        executor = createExecutor(taskManager);
+        httpServer.setExecutor(executor);
+    }
+
+    //пул - для менеджеров, безопасных для нескольких потоков; FileBackedTaskManager в режиме GROUP ждёт
+    //сброса журнала вне своего монитора, и параллельные запросы делят один fsync. Остальные - в потоке сервера
+    private static ExecutorService createExecutor(TaskManager taskManager) {
+        if (!(taskManager instanceof ConcurrentTaskManager) && !(taskManager instanceof FileBackedTaskManager)) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2, runnable -> {
+            Thread thread = new Thread(runnable, "http-handler");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
+    //аргументы: [--primary | --follow | --concurrent] [порт].
+    //--primary: data.csv ведётся с журналом, который могут читать реплики;
+    //--follow: реплика для чтения, догоняющая журнал ведущего сервера из того же каталога;
+    //--concurrent: задачи только в памяти, в ConcurrentTaskManager
     public static void main(String[] args) throws IOException {
-        //TaskManager taskManager = Managers.getDefault();
-        TaskManager taskManager = FileBackedTaskManager.loadFromFile(new File("data.csv"));
-        HttpTaskServer taskServer = new HttpTaskServer(taskManager);
+        File data = new File("data.csv");
+        int port = DEFAULT_PORT;
+        TaskManager taskManager = null;
+        for (String arg : args) {
+            if (arg.equals("--primary")) {
+                taskManager = FileBackedTaskManager.loadFromFile(data, PersistenceMode.WRITE_AHEAD_LOG);
+            } else if (arg.equals("--follow")) {
+                taskManager = new ReplicaTaskManager(data);
+            } else if (arg.equals("--concurrent")) {
+                taskManager = Managers.getConcurrent();
+            } else {
+                port = Integer.parseInt(arg);
+            }
+        }
+        if (taskManager == null) {
+            taskManager = FileBackedTaskManager.loadFromFile(data);
+        }
+        HttpTaskServer taskServer = new HttpTaskServer(taskManager, port);
         taskServer.startHttpServer();
     }
 
     public static HttpServer createHttpServer(TaskManager taskManager, Gson gson) throws IOException {
+        return createHttpServer(taskManager, gson, DEFAULT_PORT);
+    }
+
+    public static HttpServer createHttpServer(TaskManager taskManager, Gson gson, int port) throws IOException {
         HttpServer httpServer = HttpServer.create();
-        httpServer.bind(new InetSocketAddress("127.0.0.1", 8080), 0);
+        httpServer.bind(new InetSocketAddress("127.0.0.1", port), 0);
 
         httpServer.createContext("/tasks", new TasksHandler(taskManager, gson));
         httpServer.createContext("/subtasks", new SubtasksHandler(taskManager, gson));
         httpServer.createContext("/epics", new EpicsHandler(taskManager, gson));
         httpServer.createContext("/history", new HistoryHandler(taskManager, gson));
         httpServer.createContext("/prioritized", new PrioritizedHandler(taskManager, gson));
+        httpServer.createContext("/batch", new BatchHandler(taskManager, gson));
+        httpServer.createContext("/admin", new AdminHandler(taskManager, gson));
 
         return httpServer;
     }
@@ -58,5 +110,8 @@ public class HttpTaskServer {
 
     public void stopHttpServer() {
         httpServer.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+        }
     }
 }
@@ -3,13 +3,19 @@ package api;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import com.sun.net.httpserver.HttpExchange;
+import exception.RequestParameterException;
+import exception.TaskNotFoundException;
 import model.Task;
 import service.TaskManager;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 public class PrioritizedHandler extends BaseHttpHandler {
 
@@ -22,12 +28,19 @@ public class PrioritizedHandler extends BaseHttpHandler {
         String path = exchange.getRequestURI().getPath();
         Endpoint endpoint = getEndpoint(path, exchange.getRequestMethod());
         try {
-            if (Objects.requireNonNull(endpoint) == Endpoint.GET_PRIORITIZED) {
-                handleGetPrioritizedTasks(exchange);
-            } else {
-                sendResponse(exchange, "Method not allowed.", 405);
+            switch (Objects.requireNonNull(endpoint)) {
+                case GET_PRIORITIZED:
+                    handleGetPrioritizedTasks(exchange);
+                    break;
+                case GET_FREE_SLOT:
+                    handleGetFreeSlot(exchange);
+                    break;
+                default:
+                    sendResponse(exchange, "Method not allowed.", 405);
             }
-        } catch (DateTimeParseException | JsonSyntaxException e) {
+        } catch (TaskNotFoundException e) {
+            sendResponse(exchange, e.getMessage(), 404);
+        } catch (DateTimeParseException | JsonSyntaxException | RequestParameterException e) {
             sendResponse(exchange, e.getMessage(), 400);
         } catch (Exception e) {
             sendResponse(exchange, e.getMessage(), 500);
@@ -37,17 +50,63 @@ public class PrioritizedHandler extends BaseHttpHandler {
     }
 
     private void handleGetPrioritizedTasks(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = getQueryParameters(exchange);
+        if (isPageRequested(parameters) || parameters.containsKey("afterStart")) {
+            List<Task> page = taskManager.getPrioritizedTasks(getPageAfterStart(parameters), getPageAfter(parameters),
+                    getPageLimit(parameters));
+            sendText(exchange, gson.toJson(page), 200);
+            return;
+        }
+        if (isWindowRequested(parameters)) {
+            LocalDateTime from = getDateTimeParameter(parameters, "from");
+            LocalDateTime to = getDateTimeParameter(parameters, "to");
+            if (to.isBefore(from)) {
+                throw new RequestParameterException("Параметр to не может быть раньше from.");
+            }
+            sendText(exchange, gson.toJson(taskManager.getPrioritizedTasks(from, to)), 200);
+            return;
+        }
         List<Task> prioritizedTasks = taskManager.getPrioritizedTasks();
-        String jsonString = gson.toJson(prioritizedTasks);
+        String jsonString = listToJson(prioritizedTasks);
         sendText(exchange, jsonString, 200);
     }
 
+    //позиция страницы - начало и id последней задачи предыдущей страницы: по одному id её не найти,
+    //если задачу успели удалить или снять с расписания
+    private LocalDateTime getPageAfterStart(Map<String, String> parameters) {
+        if (parameters.containsKey("afterStart")) {
+            return getDateTimeParameter(parameters, "afterStart");
+        }
+        if (getPageAfter(parameters) != 0) {
+            throw new RequestParameterException("Не передан параметр afterStart.");
+        }
+        return null;
+    }
+
+    private void handleGetFreeSlot(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = getQueryParameters(exchange);
+        Duration duration = getDurationParameter(parameters, "duration");
+        LocalDateTime from = getDateTimeParameter(parameters, "from");
+        LocalDateTime to = getDateTimeParameter(parameters, "to");
+        Optional<LocalDateTime> start = taskManager.findFreeSlot(duration, from, to);
+        if (start.isEmpty()) {
+            sendResponse(exchange, "В заданном интервале нет свободного времени такой длительности.", 404);
+            return;
+        }
+        FreeSlotResponse response = new FreeSlotResponse(start.get(), start.get().plus(duration));
+        sendText(exchange, gson.toJson(response), 200);
+    }
+
     private Endpoint getEndpoint(String requestPath, String method) {
         String[] pathParts = requestPath.split("/");
 
         if (method.equals("GET") && pathParts.length == 2 && pathParts[1].equals("prioritized")) {
             return Endpoint.GET_PRIORITIZED;
         }
+        if (method.equals("GET") && pathParts.length == 3 && pathParts[1].equals("prioritized")
+                && pathParts[2].equals("free")) {
+            return Endpoint.GET_FREE_SLOT;
+        }
         return Endpoint.UNKNOWN;
     }
 }
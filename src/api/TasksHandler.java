@@ -4,6 +4,8 @@ import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import com.sun.net.httpserver.HttpExchange;
 import exception.ManagerAddTaskException;
+import exception.ReadOnlyManagerException;
+import exception.RequestParameterException;
 import exception.TaskNotFoundException;
 import model.Task;
 import service.TaskManager;
@@ -13,6 +15,7 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class TasksHandler extends BaseHttpHandler {
@@ -47,7 +50,9 @@ public class TasksHandler extends BaseHttpHandler {
             sendResponse(exchange, e.getMessage(), 406);
         } catch (TaskNotFoundException e) {
             sendResponse(exchange, e.getMessage(), 404);
-        } catch (DateTimeParseException | JsonSyntaxException e) {
+        } catch (ReadOnlyManagerException e) {
+            sendResponse(exchange, e.getMessage(), 405);
+        } catch (DateTimeParseException | JsonSyntaxException | RequestParameterException e) {
             sendResponse(exchange, e.getMessage(), 400);
         } catch (Exception e) {
             sendResponse(exchange, e.getMessage(), 500);
@@ -75,9 +80,15 @@ public class TasksHandler extends BaseHttpHandler {
     }
 
     private void handleGetTasks(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = getQueryParameters(exchange);
+        if (isPageRequested(parameters)) {
+            List<Task> page = taskManager.getTasks(getPageAfter(parameters), getPageLimit(parameters));
+            sendText(exchange, gson.toJson(page), 200);
+            return;
+        }
         List<Task> taskList = taskManager.getAllTasks();
 
-        String jsonString = gson.toJson(taskList);
+        String jsonString = listToJson(taskList);
         sendText(exchange, jsonString, 200);
     }
 
@@ -5,4 +5,8 @@ public class ManagerBackupException extends  RuntimeException {
     public ManagerBackupException(String message) {
         super(message);
     }
+
+    public ManagerBackupException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -0,0 +1,8 @@
+package exception;
+
+public class ReadOnlyManagerException extends RuntimeException {
+
+    public ReadOnlyManagerException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package exception;
+
+public class RequestParameterException extends RuntimeException {
+
+    public RequestParameterException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package exception;
+
+public class SnapshotCorruptedException extends ManagerBackupException {
+
+    public SnapshotCorruptedException(String message) {
+        super(message);
+    }
+}
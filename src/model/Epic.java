@@ -1,22 +1,40 @@
 package model;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.TreeMap;
 
 public class Epic extends Task {
-    private ArrayList<Integer> subtasksIds;
+    private LinkedHashSet<Integer> subtasksIds;
     protected LocalDateTime endTime;
+    //накопленные значения по подзадачам, чтобы не пересчитывать эпик целиком при каждом изменении
+    private transient int[] statusCounters;
+    private transient Duration totalDuration;
+    private transient NavigableMap<LocalDateTime, Integer> startTimes;
+    private transient NavigableMap<LocalDateTime, Integer> endTimes;
 
     public Epic(String name, String description) {
         super(name, description, TaskStatus.NEW, null, null);
-        subtasksIds = new ArrayList<>();
+        subtasksIds = new LinkedHashSet<>();
+        statusCounters = new int[TaskStatus.values().length];
+        totalDuration = Duration.ZERO;
+        startTimes = new TreeMap<>();
+        endTimes = new TreeMap<>();
     }
 
     public Epic(Epic epic) {
         super(epic);
-        this.subtasksIds = epic.getSubtasksIds();
+        this.subtasksIds = new LinkedHashSet<>(epic.subtasksIds);
         this.endTime = epic.endTime;
+        this.statusCounters = epic.statusCounters.clone();
+        this.totalDuration = epic.totalDuration;
+        this.startTimes = new TreeMap<>(epic.startTimes);
+        this.endTimes = new TreeMap<>(epic.endTimes);
     }
 
     public ArrayList<Integer> getSubtasksIds() {
@@ -44,16 +62,92 @@ public class Epic extends Task {
         return result;
     }
 
-    public void addSubtasksId(int subtasksId) {
-        subtasksIds.add(subtasksId);
+    public void addSubtask(Subtask subtask) {
+        if (subtasksIds.add(subtask.getId())) {
+            include(subtask);
+            refresh();
+        }
     }
 
-    public void deleteSubtaskId(int subtaskId) {
-        subtasksIds.remove(Integer.valueOf(subtaskId));
+    //для загрузки: все подзадачи учитываются сразу, статус и время эпика пересчитываются один раз
+    public void addSubtasks(Collection<Subtask> subtasks) {
+        for (Subtask subtask : subtasks) {
+            if (subtasksIds.add(subtask.getId())) {
+                include(subtask);
+            }
+        }
+        refresh();
+    }
+
+    public void updateSubtask(Subtask oldSubtask, Subtask newSubtask) {
+        if (subtasksIds.contains(newSubtask.getId())) {
+            exclude(oldSubtask);
+            include(newSubtask);
+            refresh();
+        }
+    }
+
+    public void deleteSubtask(Subtask subtask) {
+        if (subtasksIds.remove(subtask.getId())) {
+            exclude(subtask);
+            refresh();
+        }
     }
 
     public void deleteAllSubtaskId() {
         subtasksIds.clear();
+        statusCounters = new int[TaskStatus.values().length];
+        totalDuration = Duration.ZERO;
+        startTimes.clear();
+        endTimes.clear();
+        refresh();
+    }
+
+    private void include(Subtask subtask) {
+        if (subtask.getStatus() != null) {
+            statusCounters[subtask.getStatus().ordinal()]++;
+        }
+        if (subtask.getDuration() != null) {
+            totalDuration = totalDuration.plus(subtask.getDuration());
+        }
+        if (subtask.getStartTime() != null) {
+            startTimes.merge(subtask.getStartTime(), 1, Integer::sum);
+        }
+        if (subtask.getEndTime() != null) {
+            endTimes.merge(subtask.getEndTime(), 1, Integer::sum);
+        }
+    }
+
+    private void exclude(Subtask subtask) {
+        if (subtask.getStatus() != null) {
+            statusCounters[subtask.getStatus().ordinal()]--;
+        }
+        if (subtask.getDuration() != null) {
+            totalDuration = totalDuration.minus(subtask.getDuration());
+        }
+        if (subtask.getStartTime() != null) {
+            startTimes.computeIfPresent(subtask.getStartTime(), (time, count) -> (count == 1) ? null : count - 1);
+        }
+        if (subtask.getEndTime() != null) {
+            endTimes.computeIfPresent(subtask.getEndTime(), (time, count) -> (count == 1) ? null : count - 1);
+        }
+    }
+
+    private void refresh() {
+        int newCount = statusCounters[TaskStatus.NEW.ordinal()];
+        int inProgressCount = statusCounters[TaskStatus.IN_PROGRESS.ordinal()];
+        int doneCount = statusCounters[TaskStatus.DONE.ordinal()];
+
+        if (newCount == 0 && inProgressCount == 0 && doneCount > 0) {
+            status = TaskStatus.DONE;
+        } else if (inProgressCount > 0 || doneCount > 0) {
+            status = TaskStatus.IN_PROGRESS;
+        } else {
+            status = TaskStatus.NEW;
+        }
+        startTime = startTimes.isEmpty() ? null : startTimes.firstKey();
+        endTime = endTimes.isEmpty() ? null : endTimes.lastKey();
+        duration = totalDuration.isZero() ? null : totalDuration;
     }
 
     public void setEndTime(LocalDateTime endTime) {
@@ -0,0 +1,28 @@
+package model;
+
+//одна операция пакета: создание или обновление задачи, эпика или подзадачи
+public class Operation {
+    private final OperationType type;
+    private final Task task;
+
+    public Operation(OperationType type, Task task) {
+        this.type = type;
+        this.task = task;
+    }
+
+    public OperationType getType() {
+        return type;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    @Override
+    public String toString() {
+        return "Operation{" +
+                "type=" + type +
+                ", task=" + task +
+                '}';
+    }
+}
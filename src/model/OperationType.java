@@ -0,0 +1,6 @@
+package model;
+
+public enum OperationType {
+    CREATE,
+    UPDATE
+}
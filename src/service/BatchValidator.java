@@ -0,0 +1,69 @@
+package service;
+
+import exception.ManagerAddTaskException;
+import exception.TaskNotFoundException;
+import model.Epic;
+import model.Operation;
+import model.OperationType;
+import model.Subtask;
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//проверка пакета целиком до применения: пакет либо применяется полностью, либо не применяется совсем.
+//интервалы сверяются с расписанием и друг с другом за один отсортированный проход
+final class BatchValidator {
+
+    private BatchValidator() {
+    }
+
+    static void validate(List<Operation> operations, Map<Integer, Task> tasks, Map<Integer, Epic> epics,
+                         Map<Integer, Subtask> subtasks, ScheduleIndex schedule) {
+        Set<Integer> updatedIds = new HashSet<>();
+        List<Task> scheduled = new ArrayList<>();
+        for (Operation operation : operations) {
+            Task task = operation.getTask();
+            if (operation.getType() == null || task == null) {
+                throw new ManagerAddTaskException("Операция пакета задана не полностью.");
+            }
+            if (operation.getType() == OperationType.UPDATE) {
+                Task current = findCurrent(task, tasks, epics, subtasks);
+                if (current == null) {
+                    throw new TaskNotFoundException(String.format("Не найдена задача с id %s.", task.getId()));
+                }
+                if (!updatedIds.add(task.getId())) {
+                    throw new ManagerAddTaskException(String.format("Задача с id %s обновляется в пакете несколько раз.",
+                            task.getId()));
+                }
+                if (task instanceof Subtask && ((Subtask) current).getEpicId() != ((Subtask) task).getEpicId()) {
+                    throw new TaskNotFoundException("Перенос в другой эпик не доступен.");
+                }
+            } else if (task instanceof Subtask && !epics.containsKey(((Subtask) task).getEpicId())) {
+                throw new ManagerAddTaskException("Подзадача не создана, потому что не найдена ее родительская задача.");
+            }
+            if (!(task instanceof Epic) && task.getStartTime() != null && task.getDuration() != null) {
+                scheduled.add(task);
+            }
+        }
+        Task overlapping = schedule.findOverlapping(scheduled, updatedIds);
+        if (overlapping != null) {
+            throw new ManagerAddTaskException(String.format(
+                    "Пакет не применён, задача \"%s\" пересекается по периоду с другой задачей.", overlapping.getName()));
+        }
+    }
+
+    private static Task findCurrent(Task task, Map<Integer, Task> tasks, Map<Integer, Epic> epics,
+                                    Map<Integer, Subtask> subtasks) {
+        if (task instanceof Epic) {
+            return epics.get(task.getId());
+        }
+        if (task instanceof Subtask) {
+            return subtasks.get(task.getId());
+        }
+        return tasks.get(task.getId());
+    }
+}
@@ -0,0 +1,387 @@
+package service;
+
+import exception.SnapshotCorruptedException;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import model.TaskType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+//двоичный снимок: заголовок (MAGIC, версия формата, поколение журнала, счётчик id, число записей) и записи.
+//в записи: тип, id (varint), статус, строки с длиной в varint и UTF-8, начало в секундах эпохи (zigzag varint),
+//длительность в минутах; для подзадачи - id эпика. У эпика время не хранится, оно считается по подзадачам.
+//с версии 2 после каждых BLOCK записей идёт CRC32C блока; первый блок включает заголовок после версии.
+//с версии 3 за записями отдельным блоком со своей суммой идут id расписания по порядку
+//и накопленные значения эпиков (id, число подзадач, статус, начало, конец, длительность).
+//с версии 4 блоки (заголовок, по BLOCK записей, расписание) записаны как длина, байты и CRC32C
+final class BinarySnapshotCodec {
+    static final int MAGIC = 0x544B4D42;
+    static final int VERSION = 4;
+    private static final int BLOCK = 4096;
+    //отсутствующее значение: статус - вне диапазона TaskStatus, строки и времена - нулевой префикс
+    private static final int ABSENT = 0;
+
+    private BinarySnapshotCodec() {
+    }
+
+    static boolean isBinary(File file) throws IOException {
+        if (file.length() < Integer.BYTES) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        }
+    }
+
+    static void write(OutputStream stream, Snapshot snapshot) throws IOException {
+        List<Task> view = snapshot.tasks();
+        DataOutputStream raw = new DataOutputStream(stream);
+        raw.writeInt(MAGIC);
+        raw.writeByte(VERSION);
+        Frame frame = new Frame();
+        DataOutputStream out = new DataOutputStream(frame);
+        writeVarLong(out, Math.max(snapshot.generation(), 0));
+        writeVarLong(out, snapshot.counter());
+        writeVarLong(out, view.size());
+        frame.writeTo(raw);
+        int written = 0;
+        for (Task task : view) {
+            written++;
+            TaskType type = (task instanceof Epic) ? TaskType.EPIC
+                    : (task instanceof Subtask) ? TaskType.SUBTASK : TaskType.TASK;
+            out.writeByte(type.ordinal());
+            writeVarLong(out, task.getId());
+            out.writeByte((task.getStatus() == null) ? TaskStatus.values().length : task.getStatus().ordinal());
+            writeString(out, task.getName());
+            writeString(out, task.getDescription());
+            if (type != TaskType.EPIC) {
+                writeTimes(out, task);
+            }
+            if (type == TaskType.SUBTASK) {
+                writeVarLong(out, ((Subtask) task).getEpicId());
+            }
+            if (written % BLOCK == 0 || written == view.size()) {
+                frame.writeTo(raw);
+            }
+        }
+        writeVarLong(out, snapshot.schedule().size());
+        for (int id : snapshot.schedule()) {
+            writeVarLong(out, id);
+        }
+        writeVarLong(out, snapshot.rollups().size());
+        for (Snapshot.EpicRollup rollup : snapshot.rollups()) {
+            writeVarLong(out, rollup.epicId());
+            writeVarLong(out, rollup.subtaskCount());
+            out.writeByte((rollup.status() == null) ? TaskStatus.values().length : rollup.status().ordinal());
+            writeTime(out, rollup.startTime());
+            writeTime(out, rollup.endTime());
+            writeVarLong(out, rollup.minutes());
+        }
+        frame.writeTo(raw);
+        raw.flush();
+    }
+
+    //значения сдвинуты на единицу, чтобы ноль означал отсутствие
+    private static void writeTimes(DataOutputStream out, Task task) throws IOException {
+        writeTime(out, task.getStartTime());
+        writeVarLong(out, (task.getDuration() == null) ? ABSENT : task.getDuration().toMinutes() + 1);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        writeVarLong(out, (time == null) ? ABSENT : zigzag(time.toEpochSecond(ZoneOffset.UTC)) + 1);
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        return (value == ABSENT) ? null : LocalDateTime.ofEpochSecond(unzigzag(value - 1), 0, ZoneOffset.UTC);
+    }
+
+    //length - размер файла: длины и количества в нём проверяются по оставшимся байтам, поэтому испорченное
+    //число не приводит к огромному выделению памяти, а любая ошибка разбора считается повреждением
+    static Snapshot read(InputStream stream, long length) throws IOException {
+        Bounded bounds = new Bounded(stream, length);
+        DataInputStream in = new DataInputStream(bounds);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Файл не является двоичным снимком.");
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException(String.format("Неподдерживаемая версия двоичного снимка: %s.", version));
+        }
+        try {
+            if (version >= 4) {
+                return readFrames(in, bounds);
+            }
+            //версия 1 без контрольных сумм, в версиях 2 и 3 сумма блока идёт после его записей
+            CRC32C crc = (version >= 2) ? new CRC32C() : null;
+            DataInputStream checked = (crc != null) ? new DataInputStream(new CheckedInputStream(bounds, crc)) : in;
+            Header header = readHeader(checked, bounds);
+            List<Task> tasks = new ArrayList<>(header.size());
+            for (int i = 0; i < header.size(); i++) {
+                tasks.add(readRecord(checked, bounds));
+                if (crc != null && ((i + 1) % BLOCK == 0 || i + 1 == header.size())) {
+                    verifyBlock(in, crc);
+                }
+            }
+            if (crc != null && tasks.isEmpty()) {
+                verifyBlock(in, crc);
+            }
+            Snapshot records = new Snapshot(tasks, header.generation(), header.counter());
+            if (version < 3) {
+                return records;
+            }
+            Snapshot snapshot = readTrailer(checked, bounds, records);
+            verifyBlock(in, crc);
+            return snapshot;
+        } catch (SnapshotCorruptedException e) {
+            throw e;
+        } catch (EOFException | RuntimeException e) {
+            throw corrupted();
+        }
+    }
+
+    //с версии 4 каждый блок записан с длиной и проверяется по сумме до разбора
+    private static Snapshot readFrames(DataInputStream in, Bounded bounds) throws IOException {
+        Bounded frame = readFrame(in, bounds);
+        DataInputStream data = new DataInputStream(frame);
+        Header header = readHeader(data, bounds);
+        endFrame(frame);
+        List<Task> tasks = new ArrayList<>(header.size());
+        while (tasks.size() < header.size()) {
+            frame = readFrame(in, bounds);
+            data = new DataInputStream(frame);
+            while (frame.remaining > 0) {
+                tasks.add(readRecord(data, frame));
+            }
+        }
+        if (tasks.size() != header.size()) {
+            throw corrupted();
+        }
+        frame = readFrame(in, bounds);
+        Snapshot snapshot = readTrailer(new DataInputStream(frame), frame,
+                new Snapshot(tasks, header.generation(), header.counter()));
+        endFrame(frame);
+        return snapshot;
+    }
+
+    private static Bounded readFrame(DataInputStream in, Bounded bounds) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > bounds.remaining - Integer.BYTES) {
+            throw corrupted();
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        if (in.readInt() != (int) crc.getValue()) {
+            throw corrupted();
+        }
+        return new Bounded(new ByteArrayInputStream(bytes), length);
+    }
+
+    private static void endFrame(Bounded frame) {
+        if (frame.remaining != 0) {
+            throw corrupted();
+        }
+    }
+
+    private static Header readHeader(DataInputStream in, Bounded bounds) throws IOException {
+        int generation = (int) readVarLong(in);
+        int counter = (int) readVarLong(in);
+        return new Header(generation, counter, readSize(in, bounds));
+    }
+
+    private static Task readRecord(DataInputStream in, Bounded bounds) throws IOException {
+        TaskType type = TaskType.values()[in.readUnsignedByte()];
+        int id = (int) readVarLong(in);
+        TaskStatus status = readStatus(in);
+        String name = readString(in, bounds);
+        String description = readString(in, bounds);
+        Task task;
+        if (type == TaskType.EPIC) {
+            Epic epic = new Epic(name, description);
+            epic.setStatus(status);
+            task = epic;
+        } else {
+            LocalDateTime startTime = readTime(in);
+            long minutes = readVarLong(in);
+            Duration duration = (minutes == ABSENT) ? null : Duration.ofMinutes(minutes - 1);
+            if (type == TaskType.SUBTASK) {
+                task = new Subtask(name, description, status, (int) readVarLong(in), startTime, duration);
+            } else {
+                task = new Task(name, description, status, startTime, duration);
+            }
+        }
+        task.setId(id);
+        return task;
+    }
+
+    private static Snapshot readTrailer(DataInputStream in, Bounded bounds, Snapshot records) throws IOException {
+        int size = readSize(in, bounds);
+        List<Integer> schedule = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            schedule.add((int) readVarLong(in));
+        }
+        size = readSize(in, bounds);
+        List<Snapshot.EpicRollup> rollups = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int epicId = (int) readVarLong(in);
+            int subtaskCount = (int) readVarLong(in);
+            rollups.add(new Snapshot.EpicRollup(epicId, subtaskCount, readStatus(in),
+                    readTime(in), readTime(in), readVarLong(in)));
+        }
+        return new Snapshot(records.tasks(), records.generation(), records.counter(), schedule, rollups);
+    }
+
+    private static TaskStatus readStatus(DataInputStream in) throws IOException {
+        int index = in.readUnsignedByte();
+        return (index < TaskStatus.values().length) ? TaskStatus.values()[index] : null;
+    }
+
+    //число элементов не больше оставшихся байт: каждый занимает хотя бы байт
+    private static int readSize(DataInputStream in, Bounded bounds) throws IOException {
+        long size = readVarLong(in);
+        if (size < 0 || size > bounds.remaining) {
+            throw corrupted();
+        }
+        return (int) size;
+    }
+
+    private static void verifyBlock(DataInputStream raw, CRC32C crc) throws IOException {
+        if (raw.readInt() != (int) crc.getValue()) {
+            throw new SnapshotCorruptedException("Binary snapshot checksum does not match, the file is damaged.");
+        }
+        crc.reset();
+    }
+
+    private static SnapshotCorruptedException corrupted() {
+        return new SnapshotCorruptedException("Binary snapshot is truncated or damaged.");
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, ABSENT);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, Bounded bounds) throws IOException {
+        long length = readVarLong(in);
+        if (length == ABSENT) {
+            return null;
+        }
+        if (length < 0 || length - 1 > bounds.remaining) {
+            throw corrupted();
+        }
+        byte[] bytes = new byte[(int) length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //по 7 бит на байт, старший бит - признак продолжения
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new EOFException("Повреждённое число в двоичном снимке.");
+    }
+
+    private record Header(int generation, int counter, int size) {
+    }
+
+    //поток, знающий, сколько байт в нём осталось
+    private static final class Bounded extends FilterInputStream {
+        private long remaining;
+
+        Bounded(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    //блок копится в памяти и пишется с длиной впереди и CRC32C после
+    private static final class Frame extends ByteArrayOutputStream {
+        void writeTo(DataOutputStream raw) throws IOException {
+            CRC32C crc = new CRC32C();
+            crc.update(buf, 0, count);
+            raw.writeInt(count);
+            raw.write(buf, 0, count);
+            raw.writeInt((int) crc.getValue());
+            reset();
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,601 @@
+package service;
+
+import exception.ManagerAddTaskException;
+import exception.TaskNotFoundException;
+import model.Epic;
+import model.Operation;
+import model.OperationType;
+import model.Subtask;
+import model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+//потокобезопасная реализация для сервера с многопоточным исполнителем:
+//задачи лежат в упорядоченных по id ConcurrentSkipListMap и читаются без блокировок,
+//расписание закрыто одной StampedLock, агрегаты эпика - блокировкой своей полосы (по id эпика)
+public class ConcurrentTaskManager implements TaskManager {
+    private static final int EPIC_LOCK_STRIPES = 64;
+
+    private final ConcurrentNavigableMap<Integer, Task> tasks = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Integer, Epic> epics = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Integer, Subtask> subtasks = new ConcurrentSkipListMap<>();
+    private final AtomicInteger counter = new AtomicInteger();
+    private final ScheduleIndex prioritizedTasks = new ScheduleIndex();
+    private final StampedLock scheduleLock = new StampedLock();
+    private final ReadWriteLock[] epicLocks = new ReadWriteLock[EPIC_LOCK_STRIPES];
+    private final HistoryManager historyManager;
+    private final SnapshotCache<Task> tasksSnapshot = new SnapshotCache<>();
+    private final SnapshotCache<Epic> epicsSnapshot = new SnapshotCache<>();
+    private final SnapshotCache<Subtask> subtasksSnapshot = new SnapshotCache<>();
+    private final SnapshotCache<Task> prioritizedSnapshot = new SnapshotCache<>();
+
+    public ConcurrentTaskManager() {
+        for (int i = 0; i < epicLocks.length; i++) {
+            epicLocks[i] = new ReentrantReadWriteLock();
+        }
+        historyManager = Managers.getDefaultHistory();
+    }
+
+    @Override
+    public Task createTask(Task task) throws ManagerAddTaskException {
+        Task newTask = new Task(task.getName(), task.getDescription(), task.getStatus(), task.getStartTime(),
+                task.getDuration());
+        if (isTaskPeriodFilled(newTask)) {
+            long stamp = scheduleLock.writeLock();
+            try {
+                if (!prioritizedTasks.isFree(newTask.getStartTime(), newTask.getEndTime())) {
+                    throw new ManagerAddTaskException("Задача не создана, пересекается по периоду с другой задачей.");
+                }
+                newTask.setId(counter.incrementAndGet());
+                tasks.put(newTask.getId(), newTask);
+                prioritizedTasks.add(newTask);
+            } finally {
+                scheduleLock.unlockWrite(stamp);
+            }
+        } else {
+            newTask.setId(counter.incrementAndGet());
+            tasks.put(newTask.getId(), newTask);
+        }
+        invalidate(tasksSnapshot, prioritizedSnapshot);
+        task.setId(newTask.getId());
+        return task;
+    }
+
+    @Override
+    public Epic createEpic(Epic epic) {
+        Epic newEpic = new Epic(epic.getName(), epic.getDescription());
+        newEpic.setId(counter.incrementAndGet());
+        epics.put(newEpic.getId(), newEpic);
+        invalidate(epicsSnapshot);
+        epic.setId(newEpic.getId());
+        return epic;
+    }
+
+    @Override
+    public Subtask createSubtask(Subtask subtask) throws ManagerAddTaskException {
+        ReadWriteLock epicLock = epicLock(subtask.getEpicId());
+        epicLock.writeLock().lock();
+        try {
+            Epic epic = epics.get(subtask.getEpicId());
+            if (epic == null) {
+                throw new ManagerAddTaskException("Подзадача не создана, потому что не найдена ее родительская задача.");
+            }
+            Subtask newSubtask = new Subtask(subtask.getName(), subtask.getDescription(), subtask.getStatus(),
+                    subtask.getEpicId(), subtask.getStartTime(), subtask.getDuration());
+            if (isTaskPeriodFilled(newSubtask)) {
+                long stamp = scheduleLock.writeLock();
+                try {
+                    if (!prioritizedTasks.isFree(newSubtask.getStartTime(), newSubtask.getEndTime())) {
+                        throw new ManagerAddTaskException("Подзадача не создана, пересекается по периоду с другой задачей.");
+                    }
+                    newSubtask.setId(counter.incrementAndGet());
+                    subtasks.put(newSubtask.getId(), newSubtask);
+                    prioritizedTasks.add(newSubtask);
+                } finally {
+                    scheduleLock.unlockWrite(stamp);
+                }
+            } else {
+                newSubtask.setId(counter.incrementAndGet());
+                subtasks.put(newSubtask.getId(), newSubtask);
+            }
+            epic.addSubtask(newSubtask);
+            invalidate(subtasksSnapshot, epicsSnapshot, prioritizedSnapshot);
+            subtask.setId(newSubtask.getId());
+            return subtask;
+        } finally {
+            epicLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Task> getTask(int id) {
+        Task task = tasks.get(id);
+        if (task != null) {
+            addToHistory(task);
+
+            task = new Task(task);
+            task.setId(id);
+        }
+        return Optional.ofNullable(task);
+    }
+
+    @Override
+    public Optional<Epic> getEpic(int id) {
+        ReadWriteLock epicLock = epicLock(id);
+        epicLock.readLock().lock();
+        try {
+            Epic epic = epics.get(id);
+            if (epic != null) {
+                addToHistory(epic);
+
+                epic = new Epic(epic);
+                epic.setId(id);
+            }
+            return Optional.ofNullable(epic);
+        } finally {
+            epicLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Subtask> getSubtask(int id) {
+        Subtask subtask = subtasks.get(id);
+        if (subtask != null) {
+            addToHistory(subtask);
+
+            subtask = new Subtask(subtask);
+            subtask.setId(id);
+        }
+        return Optional.ofNullable(subtask);
+    }
+
+    //списки ниже - неизменяемые снимки, общие для всех читателей до следующего изменения коллекции
+    @Override
+    public List<Task> getAllTasks() {
+        return tasksSnapshot.get(() -> new ArrayList<>(tasks.values()));
+    }
+
+    @Override
+    public List<Epic> getAllEpics() {
+        return epicsSnapshot.get(() -> copyEpics(epics.keySet()));
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks() {
+        return subtasksSnapshot.get(() -> new ArrayList<>(subtasks.values()));
+    }
+
+    @Override
+    public List<Task> getTasks(int afterId, int limit) {
+        return tasks.tailMap(afterId, false).values().stream().limit(limit).toList();
+    }
+
+    @Override
+    public List<Epic> getEpics(int afterId, int limit) {
+        return copyEpics(epics.tailMap(afterId, false).keySet().stream().limit(limit).toList());
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(int afterId, int limit) {
+        return subtasks.tailMap(afterId, false).values().stream().limit(limit).toList();
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasks(int epicId) {
+        ReadWriteLock epicLock = epicLock(epicId);
+        epicLock.readLock().lock();
+        try {
+            Epic epic = epics.get(epicId);
+            if (epic == null) {
+                throw new TaskNotFoundException(String.format("Не найден эпик с id %s.", epicId));
+            }
+            List<Subtask> subtaskByEpic = new ArrayList<>();
+            for (Integer subtaskId : epic.getSubtasksIds()) {
+                subtaskByEpic.add(subtasks.get(subtaskId));
+            }
+            return subtaskByEpic;
+        } finally {
+            epicLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        tasks.keySet().forEach(this::removeTask);
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        epics.keySet().forEach(this::removeEpic);
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        for (Integer epicId : epics.keySet()) {
+            ReadWriteLock epicLock = epicLock(epicId);
+            epicLock.writeLock().lock();
+            try {
+                Epic epic = epics.get(epicId);
+                if (epic != null) {
+                    List<Integer> subtasksIds = epic.getSubtasksIds();
+                    subtasksIds.forEach(subtasks::remove);
+                    epic.deleteAllSubtaskId();
+                    invalidate(subtasksSnapshot, epicsSnapshot);
+                    unschedule(subtasksIds);
+                    removeFromHistory(subtasksIds);
+                }
+            } finally {
+                epicLock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public Task updateTask(Task task) throws TaskNotFoundException {
+        Task updatedTask = new Task(task);
+        updatedTask.setId(task.getId());
+        long stamp = scheduleLock.writeLock();
+        try {
+            if (tasks.replace(task.getId(), updatedTask) == null) {
+                throw new TaskNotFoundException(String.format("Не найдена задача с id %s.", task.getId()));
+            }
+            reschedule(updatedTask);
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+        invalidate(tasksSnapshot);
+        return task;
+    }
+
+    @Override
+    public Epic updateEpic(Epic epic) {
+        ReadWriteLock epicLock = epicLock(epic.getId());
+        epicLock.writeLock().lock();
+        try {
+            Epic currentEpic = epics.get(epic.getId());
+            if (currentEpic == null) {
+                throw new TaskNotFoundException(String.format("Не найдена задача с id %s.", epic.getId()));
+            }
+            currentEpic.setName(epic.getName());
+            currentEpic.setDescription(epic.getDescription());
+            invalidate(epicsSnapshot);
+        } finally {
+            epicLock.writeLock().unlock();
+        }
+        return epic;
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask) {
+        ReadWriteLock epicLock = epicLock(subtask.getEpicId());
+        epicLock.writeLock().lock();
+        try {
+            Subtask currentSubtask = subtasks.get(subtask.getId());
+            if (currentSubtask == null) {
+                throw new TaskNotFoundException(String.format("Не найдена задача с id %s.", subtask.getId()));
+            }
+            if (currentSubtask.getEpicId() != subtask.getEpicId()) {
+                throw new TaskNotFoundException("Перенос в другой эпик не доступен.");
+            }
+            Subtask updatedSubtask = new Subtask(subtask);
+            updatedSubtask.setId(subtask.getId());
+            long stamp = scheduleLock.writeLock();
+            try {
+                reschedule(updatedSubtask);
+            } finally {
+                scheduleLock.unlockWrite(stamp);
+            }
+            replace(subtasks, updatedSubtask);
+            epics.get(subtask.getEpicId()).updateSubtask(currentSubtask, updatedSubtask);
+            invalidate(subtasksSnapshot, epicsSnapshot);
+        } finally {
+            epicLock.writeLock().unlock();
+        }
+        return subtask;
+    }
+
+    @Override
+    public Task deleteTaskPerId(int id) {
+        Task task = removeTask(id);
+        if (task == null) {
+            throw new TaskNotFoundException(String.format("Не найдена задача с id %s.", id));
+        }
+        return task;
+    }
+
+    @Override
+    public Epic deleteEpicPerId(int id) {
+        Epic epic = removeEpic(id);
+        if (epic == null) {
+            throw new TaskNotFoundException(String.format("Не найдена задача с id %s.", id));
+        }
+        return epic;
+    }
+
+    @Override
+    public Subtask deleteSubtaskPerId(int id) {
+        Subtask subtask = subtasks.get(id);
+        if (subtask == null) {
+            throw new TaskNotFoundException(String.format("Не найдена задача с id %s.", id));
+        }
+        ReadWriteLock epicLock = epicLock(subtask.getEpicId());
+        epicLock.writeLock().lock();
+        long stamp = scheduleLock.writeLock();
+        try {
+            subtask = subtasks.remove(id);
+            if (subtask == null) {
+                throw new TaskNotFoundException(String.format("Не найдена задача с id %s.", id));
+            }
+            epics.get(subtask.getEpicId()).deleteSubtask(subtask);
+            prioritizedTasks.remove(id);
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+            epicLock.writeLock().unlock();
+        }
+        invalidate(subtasksSnapshot, epicsSnapshot, prioritizedSnapshot);
+        removeFromHistory(List.of(id));
+        return subtask;
+    }
+
+    //пакет держит блокировки всех затронутых эпиков (в порядке полос, чтобы не было взаимоблокировок)
+    //и блокировку расписания на запись, поэтому проверка и применение видны другим потокам целиком
+    @Override
+    public List<Task> applyBatch(List<Operation> operations) {
+        List<ReadWriteLock> locks = operations.stream()
+                .map(Operation::getTask)
+                .filter(task -> task instanceof Epic || task instanceof Subtask)
+                .map(task -> (task instanceof Subtask) ? ((Subtask) task).getEpicId() : task.getId())
+                .map(epicId -> Math.floorMod(epicId, EPIC_LOCK_STRIPES))
+                .distinct()
+                .sorted()
+                .map(stripe -> epicLocks[stripe])
+                .toList();
+        locks.forEach(lock -> lock.writeLock().lock());
+        long stamp = scheduleLock.writeLock();
+        try {
+            BatchValidator.validate(operations, tasks, epics, subtasks, prioritizedTasks);
+            operations.stream()
+                    .filter(operation -> operation.getType() == OperationType.UPDATE)
+                    .forEach(operation -> prioritizedTasks.remove(operation.getTask().getId()));
+            List<Task> result = new ArrayList<>(operations.size());
+            for (Operation operation : operations) {
+                result.add(apply(operation));
+            }
+            return result;
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+            locks.forEach(lock -> lock.writeLock().unlock());
+            invalidate(tasksSnapshot, epicsSnapshot, subtasksSnapshot, prioritizedSnapshot);
+        }
+    }
+
+    //вызывается под блокировками пакета после проверки, поэтому интервалы уже свободны
+    private Task apply(Operation operation) {
+        Task task = operation.getTask();
+        if (task instanceof Epic) {
+            Epic epic = (Epic) task;
+            if (operation.getType() == OperationType.CREATE) {
+                return createEpic(epic);
+            }
+            Epic currentEpic = epics.get(epic.getId());
+            currentEpic.setName(epic.getName());
+            currentEpic.setDescription(epic.getDescription());
+            return epic;
+        }
+        if (task instanceof Subtask) {
+            Subtask subtask = (Subtask) task;
+            Subtask newSubtask = new Subtask(subtask);
+            Epic epic = epics.get(subtask.getEpicId());
+            if (operation.getType() == OperationType.CREATE) {
+                newSubtask.setId(counter.incrementAndGet());
+                subtasks.put(newSubtask.getId(), newSubtask);
+                epic.addSubtask(newSubtask);
+            } else {
+                newSubtask.setId(subtask.getId());
+                epic.updateSubtask(replace(subtasks, newSubtask), newSubtask);
+            }
+            schedule(newSubtask);
+            subtask.setId(newSubtask.getId());
+            return subtask;
+        }
+        Task newTask = new Task(task);
+        if (operation.getType() == OperationType.CREATE) {
+            newTask.setId(counter.incrementAndGet());
+            tasks.put(newTask.getId(), newTask);
+        } else {
+            newTask.setId(task.getId());
+            replace(tasks, newTask);
+        }
+        schedule(newTask);
+        task.setId(newTask.getId());
+        return task;
+    }
+
+    //обновление только существующей записи: put вернул бы удалённую задачу, а не сообщил об ошибке
+    private static <T extends Task> T replace(Map<Integer, T> storage, T updated) throws TaskNotFoundException {
+        T previous = storage.replace(updated.getId(), updated);
+        if (previous == null) {
+            throw new TaskNotFoundException(String.format("Не найдена задача с id %s.", updated.getId()));
+        }
+        return previous;
+    }
+
+    private void schedule(Task task) {
+        if (isTaskPeriodFilled(task)) {
+            prioritizedTasks.add(task);
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        synchronized (historyManager) {
+            return historyManager.getHistory();
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return prioritizedSnapshot.get(() -> {
+            long stamp = scheduleLock.readLock();
+            try {
+                return prioritizedTasks.toList();
+            } finally {
+                scheduleLock.unlockRead(stamp);
+            }
+        });
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime afterStart, int afterId, int limit) {
+        long stamp = scheduleLock.readLock();
+        try {
+            return prioritizedTasks.pageAfter(afterStart, afterId, limit);
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        long stamp = scheduleLock.readLock();
+        try {
+            return prioritizedTasks.window(from, to);
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Optional<LocalDateTime> findFreeSlot(Duration duration, LocalDateTime notBefore, LocalDateTime notAfter) {
+        long stamp = scheduleLock.readLock();
+        try {
+            return prioritizedTasks.findFreeSlot(duration, notBefore, notAfter);
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    //удаление берёт блокировку расписания на запись, как и пакет: задача не исчезает между проверкой
+    //пакета и его применением
+    private Task removeTask(int id) {
+        Task task;
+        long stamp = scheduleLock.writeLock();
+        try {
+            task = tasks.remove(id);
+            if (task != null) {
+                prioritizedTasks.remove(id);
+            }
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+        if (task != null) {
+            invalidate(tasksSnapshot, prioritizedSnapshot);
+            removeFromHistory(List.of(id));
+        }
+        return task;
+    }
+
+    private Epic removeEpic(int id) {
+        ReadWriteLock epicLock = epicLock(id);
+        epicLock.writeLock().lock();
+        try {
+            Epic epic;
+            List<Integer> subtasksIds;
+            long stamp = scheduleLock.writeLock();
+            try {
+                epic = epics.remove(id);
+                if (epic == null) {
+                    return null;
+                }
+                subtasksIds = epic.getSubtasksIds();
+                subtasksIds.forEach(subtasks::remove);
+                subtasksIds.forEach(prioritizedTasks::remove);
+            } finally {
+                scheduleLock.unlockWrite(stamp);
+            }
+            invalidate(epicsSnapshot, subtasksSnapshot, prioritizedSnapshot);
+            removeFromHistory(subtasksIds);
+            removeFromHistory(List.of(id));
+            return epic;
+        } finally {
+            epicLock.writeLock().unlock();
+        }
+    }
+
+    //вызывается под блокировкой расписания на запись
+    private void reschedule(Task task) {
+        prioritizedTasks.remove(task.getId());
+        if (isTaskPeriodFilled(task) && prioritizedTasks.isFree(task.getStartTime(), task.getEndTime(), task.getId())) {
+            prioritizedTasks.add(task);
+        }
+        prioritizedSnapshot.invalidate();
+    }
+
+    private void unschedule(List<Integer> ids) {
+        long stamp = scheduleLock.writeLock();
+        try {
+            ids.forEach(prioritizedTasks::remove);
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+        invalidate(prioritizedSnapshot);
+    }
+
+    //копии эпиков, каждая снята под блокировкой эпика на чтение
+    private List<Epic> copyEpics(Collection<Integer> epicsIds) {
+        List<Epic> allEpics = new ArrayList<>(epicsIds.size());
+        for (Integer epicId : epicsIds) {
+            ReadWriteLock epicLock = epicLock(epicId);
+            epicLock.readLock().lock();
+            try {
+                Epic epic = epics.get(epicId);
+                if (epic != null) {
+                    Epic epicCopy = new Epic(epic);
+                    epicCopy.setId(epicId);
+                    allEpics.add(epicCopy);
+                }
+            } finally {
+                epicLock.readLock().unlock();
+            }
+        }
+        return allEpics;
+    }
+
+    private void invalidate(SnapshotCache<?>... snapshots) {
+        for (SnapshotCache<?> snapshot : snapshots) {
+            snapshot.invalidate();
+        }
+    }
+
+    private void addToHistory(Task task) {
+        synchronized (historyManager) {
+            historyManager.addTask(task);
+        }
+    }
+
+    private void removeFromHistory(List<Integer> ids) {
+        synchronized (historyManager) {
+            ids.forEach(historyManager::remove);
+        }
+    }
+
+    private ReadWriteLock epicLock(int epicId) {
+        return epicLocks[Math.floorMod(epicId, epicLocks.length)];
+    }
+
+    private boolean isTaskPeriodFilled(Task task) {
+        return task.getStartTime() != null && task.getDuration() != null;
+    }
+}
@@ -0,0 +1,53 @@
+package service;
+
+import exception.ManagerBackupException;
+
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+//миграции записей CSV-снимка между версиями схемы: MIGRATORS.get(v) переводит строку записи версии v
+//в версию v + 1. Миграции применяются построчно прямо при чтении, поэтому старый снимок загружается
+//тем же одним проходом, что и текущий, без промежуточной копии в памяти.
+//при изменении формата записи CURRENT увеличивается, а сюда добавляется миграция с предыдущей версии
+final class CsvMigrations {
+    static final int CURRENT = 2;
+    //файлы без заголовка и с заголовком без версии
+    static final int LEGACY = 1;
+    private static final Map<Integer, UnaryOperator<String>> MIGRATORS = Map.of(
+            1, CsvMigrations::escapeText
+    );
+
+    private CsvMigrations() {
+    }
+
+    //цепочка миграций от version до текущей версии; null, если записи уже в текущей версии
+    static UnaryOperator<String> from(int version) throws ManagerBackupException {
+        if (version > CURRENT) {
+            throw new ManagerBackupException(String.format(
+                    "Snapshot schema version %d is newer than supported version %d.", version, CURRENT));
+        }
+        UnaryOperator<String> chain = null;
+        for (int v = version; v < CURRENT; v++) {
+            UnaryOperator<String> step = MIGRATORS.get(v);
+            UnaryOperator<String> previous = chain;
+            chain = (previous == null) ? step : record -> step.apply(previous.apply(record));
+        }
+        return chain;
+    }
+
+    //1 -> 2: в версии 1 текст писался как есть, и задача с запятой в имени или описании не читалась.
+    //версия 2 экранирует текст, поэтому обратная косая черта из старого файла должна стать "\\".
+    //строки с другим числом полей (контрольная точка) не меняются
+    private static String escapeText(String record) {
+        if (record.indexOf('\\') < 0) {
+            return record;
+        }
+        String[] fields = record.split(",", -1);
+        if (fields.length != 8) {
+            return record;
+        }
+        fields[2] = CsvSnapshotReader.escape(fields[2]);
+        fields[4] = CsvSnapshotReader.escape(fields[4]);
+        return String.join(",", fields);
+    }
+}
@@ -0,0 +1,682 @@
+package service;
+
+import exception.ManagerBackupException;
+import exception.SnapshotCorruptedException;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import model.TaskType;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.UnaryOperator;
+
+//потоковое чтение CSV-снимка: файл читается блоками, поля разбираются по позициям запятых в строке,
+//без промежуточных массивов строк; числа и дата разбираются прямо из строки.
+//заголовок снимка хранит CRC32C всего, что после него: усечённый или испорченный файл не загружается молча.
+//в теле после каждых BLOCK_LINES строк и в конце идёт строка block,<CRC32C байт этих строк>: так проверяется
+//и снимок, отданный потоком без суммы в заголовке, а при параллельном чтении каждая часть проверяет свои блоки.
+//заголовок хранит и версию схемы: записи старых версий переводятся в текущую по ходу чтения (CsvMigrations)
+final class CsvSnapshotReader {
+    static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
+    //последняя строка снимка контрольной точки: поколение вошедших в него сегментов журнала и счётчик id
+    static final String CHECKPOINT = "checkpoint";
+    //строки после записей: id задач в порядке расписания, по SCHEDULE_LINE в строке, и накопленные значения
+    //эпиков (id, число подзадач, статус, начало, конец, длительность)
+    static final String SCHEDULE = "schedule";
+    static final String ROLLUP = "rollup";
+    static final int SCHEDULE_LINE = 1024;
+    static final String BLOCK_LINE = "block";
+    static final int BLOCK_LINES = 4096;
+    private static final int FIELDS = 8;
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+    //размер части при параллельном чтении: меньшие файлы читаются в одном потоке
+    private static final long MIN_CHUNK = 1 << 20;
+    private static final long MAX_CHUNK = 64L << 20;
+    private static final int BLOCK = 1 << 20;
+    static final String COLUMNS = "id,type,name,status,description,startTime,duration,epic";
+    //заголовок версии 1: без версии и с неверными названиями столбцов, записи те же
+    private static final String LEGACY_COLUMNS = "id,type,name,status,startTime,description,startTime,duration,epic";
+    private static final String SCHEMA = "schema=";
+    private static final String CHECKSUM = "crc32c=";
+    //признак тела с суммами блоков, значение - число строк в блоке
+    private static final String BLOCKS = "blocks=";
+
+    private CsvSnapshotReader() {
+    }
+
+    static Snapshot read(File file) throws ManagerBackupException {
+        return read(file, null);
+    }
+
+    //с пулом файл делится по границам строк на части, которые разбираются параллельно;
+    //результаты склеиваются в порядке частей, поэтому порядок записей тот же, что при чтении подряд.
+    //если в заголовке есть контрольная сумма, она сверяется с телом файла в том же проходе
+    static Snapshot read(File file, ForkJoinPool pool) throws ManagerBackupException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (pool == null || pool.getParallelism() < 2 || size < MIN_CHUNK) {
+                return readSequentially(channel);
+            }
+            long headerEnd = findLineEnd(channel, 0, size);
+            String header = readHeader(channel, headerEnd);
+            long bodyStart = isHeader(header) ? headerEnd : 0;
+            long expectedChecksum = parseChecksum(header);
+            boolean blocks = hasBlocks(header);
+            UnaryOperator<String> migrator = CsvMigrations.from(parseVersion(header));
+            ForkJoinTask<Long> checksum = (expectedChecksum < 0) ? null
+                    : pool.submit(() -> checksum(channel, bodyStart, size));
+            List<ForkJoinTask<Chunk>> parts = new ArrayList<>();
+            long chunkSize = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, size / (pool.getParallelism() * 4L)));
+            long start = bodyStart;
+            while (start < size) {
+                long end = (size - start <= chunkSize) ? size
+                        : blocks ? findBlockEnd(channel, start + chunkSize, size)
+                        : findLineEnd(channel, start + chunkSize, size);
+                long chunkStart = start;
+                parts.add(pool.submit(() -> parseChunk(channel, chunkStart, end, migrator, blocks)));
+                start = end;
+            }
+            Chunk result = new Chunk(null);
+            for (ForkJoinTask<Chunk> part : parts) {
+                try {
+                    result.merge(part.join());
+                } catch (RuntimeException e) {
+                    if (expectedChecksum >= 0 || blocks) {
+                        throw corrupted();
+                    }
+                    throw e;
+                }
+            }
+            if (checksum != null && checksum.join() != expectedChecksum) {
+                throw corrupted();
+            }
+            return result.toSnapshot();
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof ManagerBackupException) {
+                throw (ManagerBackupException) e;
+            }
+            throw new ManagerBackupException("Program experienced an error trying to initialize from a file.");
+        }
+    }
+
+    //строка заголовка текущей версии без контрольной суммы - для снимка, который отдаётся потоком
+    static String header() {
+        return String.format("%s,%s%d,%s%d\n", COLUMNS, SCHEMA, CsvMigrations.CURRENT, BLOCKS, BLOCK_LINES);
+    }
+
+    //строка заголовка с местом под контрольную сумму тела файла (всего, что после заголовка)
+    static String header(long checksum) {
+        return String.format("%s,%s%d,%s%d,%s%08x\n", COLUMNS, SCHEMA, CsvMigrations.CURRENT, BLOCKS, BLOCK_LINES,
+                CHECKSUM, checksum);
+    }
+
+    //строка расписания с id из ids[from, to); пустое расписание - строка без id
+    static String scheduleLine(List<Integer> ids, int from, int to) {
+        StringBuilder line = new StringBuilder(SCHEDULE);
+        for (int i = from; i < to; i++) {
+            line.append(',').append(ids.get(i));
+        }
+        return line.append('\n').toString();
+    }
+
+    static String rollupLine(Snapshot.EpicRollup rollup) {
+        return String.format("%s,%d,%d,%s,%s,%s,%d\n", ROLLUP, rollup.epicId(), rollup.subtaskCount(),
+                (rollup.status() == null) ? "" : rollup.status(), formatDateTime(rollup.startTime()),
+                formatDateTime(rollup.endTime()), rollup.minutes());
+    }
+
+    private static String formatDateTime(LocalDateTime dateTime) {
+        return (dateTime == null) ? "" : dateTime.format(DATE_TIME_FORMATTER);
+    }
+
+    //смещение шестнадцатеричной суммы в заголовке, чтобы дописать её после записи тела
+    static int checksumOffset() {
+        return header(0).indexOf(CHECKSUM) + CHECKSUM.length();
+    }
+
+    //блоками по BLOCK байт: в блоке разбираются все целые строки, хвост переносится в следующий блок
+    private static Snapshot readSequentially(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK);
+        CRC32C crc = new CRC32C();
+        Chunk result = new Chunk(null);
+        long expectedChecksum = -1;
+        BlockVerifier blocks = null;
+        boolean headerRead = false;
+        boolean eof = false;
+        while (!eof) {
+            eof = channel.read(buffer) < 0;
+            int end = buffer.position();
+            if (!eof) {
+                end = lastLineEnd(buffer, end);
+                if (end < 0) {
+                    //строка длиннее блока
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                    continue;
+                }
+            }
+            int from = 0;
+            if (!headerRead && end > 0) {
+                int headerEnd = firstLineEnd(buffer, end);
+                String header = new String(buffer.array(), 0, headerEnd, StandardCharsets.UTF_8);
+                expectedChecksum = parseChecksum(header);
+                blocks = hasBlocks(header) ? new BlockVerifier() : null;
+                from = isHeader(header) ? headerEnd : 0;
+                result = new Chunk(CsvMigrations.from(parseVersion(header)));
+                headerRead = true;
+            }
+            crc.update(buffer.array(), from, end - from);
+            if (blocks != null) {
+                blocks.update(buffer.array(), from, end);
+            }
+            try {
+                result.accept(new String(buffer.array(), from, end - from, StandardCharsets.UTF_8));
+            } catch (RuntimeException e) {
+                //снимок с суммами пишется только целиком, неразборчивая строка в нём - порча
+                if (expectedChecksum >= 0 || blocks != null) {
+                    throw corrupted();
+                }
+                throw e;
+            }
+            buffer.limit(buffer.position()).position(end);
+            buffer.compact();
+        }
+        if (blocks != null) {
+            blocks.finish();
+        }
+        if (expectedChecksum >= 0 && crc.getValue() != expectedChecksum) {
+            throw corrupted();
+        }
+        return result.toSnapshot();
+    }
+
+    private static long checksum(FileChannel channel, long start, long end) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK);
+        for (long position = start; position < end; ) {
+            buffer.clear().limit((int) Math.min(BLOCK, end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            crc.update(buffer.flip());
+            position += read;
+        }
+        return crc.getValue();
+    }
+
+    private static String readHeader(FileChannel channel, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(end, BLOCK));
+        channel.read(buffer, 0);
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    //файл, записанный вручную, может начинаться сразу с записей: тогда первая строка разбирается как запись
+    static boolean isHeader(String line) {
+        return line.startsWith(COLUMNS) || line.startsWith(LEGACY_COLUMNS);
+    }
+
+    //версия схемы из заголовка; файл без заголовка или без версии в нём - версии 1
+    static int parseVersion(String header) {
+        int start = valueStart(header, SCHEMA);
+        if (start < 0) {
+            return CsvMigrations.LEGACY;
+        }
+        int end = start;
+        while (end < header.length() && Character.isDigit(header.charAt(end))) {
+            end++;
+        }
+        return Integer.parseInt(header, start, end, 10);
+    }
+
+    //сумма из заголовка или -1, если заголовок её не содержит (файл записан до появления сумм)
+    static long parseChecksum(String header) {
+        int start = valueStart(header, CHECKSUM);
+        if (start < 0) {
+            return -1;
+        }
+        int end = start;
+        while (end < header.length() && Character.digit(header.charAt(end), 16) >= 0) {
+            end++;
+        }
+        return Long.parseLong(header, start, end, 16);
+    }
+
+    static boolean hasBlocks(String header) {
+        return valueStart(header, BLOCKS) >= 0;
+    }
+
+    private static int valueStart(String header, String key) {
+        int index = header.indexOf("," + key);
+        return (!isHeader(header) || index < 0) ? -1 : index + 1 + key.length();
+    }
+
+    //текст версии 2: запятая, переводы строки и обратная косая черта пишутся как \c, \n, \r и \\,
+    //чтобы запись по-прежнему делилась на поля по запятым, а файл на записи - по переводам строк
+    static String escape(String text) {
+        if (text == null) {
+            return null;
+        }
+        int i = 0;
+        while (i < text.length() && escapeCode(text.charAt(i)) == 0) {
+            i++;
+        }
+        if (i == text.length()) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length() + 8).append(text, 0, i);
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            char code = escapeCode(c);
+            if (code == 0) {
+                result.append(c);
+            } else {
+                result.append('\\').append(code);
+            }
+        }
+        return result.toString();
+    }
+
+    private static char escapeCode(char c) {
+        switch (c) {
+            case ',':
+                return 'c';
+            case '\n':
+                return 'n';
+            case '\r':
+                return 'r';
+            case '\\':
+                return '\\';
+            default:
+                return 0;
+        }
+    }
+
+    //подстрока поля без экранирования; в обычном тексте обратной косой черты нет и это просто substring
+    private static String unescape(String line, int start, int end) {
+        int slash = line.indexOf('\\', start, end);
+        if (slash < 0) {
+            return line.substring(start, end);
+        }
+        StringBuilder result = new StringBuilder(end - start).append(line, start, slash);
+        for (int i = slash; i < end; i++) {
+            char c = line.charAt(i);
+            if (c != '\\' || i + 1 == end) {
+                result.append(c);
+                continue;
+            }
+            char code = line.charAt(++i);
+            switch (code) {
+                case 'c':
+                    result.append(',');
+                    break;
+                case 'n':
+                    result.append('\n');
+                    break;
+                case 'r':
+                    result.append('\r');
+                    break;
+                default:
+                    result.append(code);
+            }
+        }
+        return result.toString();
+    }
+
+    private static SnapshotCorruptedException corrupted() {
+        return new SnapshotCorruptedException("Snapshot checksum does not match, the file is damaged.");
+    }
+
+    private static int lastLineEnd(ByteBuffer buffer, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int firstLineEnd(ByteBuffer buffer, int end) {
+        for (int i = 0; i < end; i++) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    //позиция сразу после первого перевода строки не раньше from. Байт '\n' не встречается внутри
+    //многобайтовых символов UTF-8, поэтому граница части никогда не разрезает символ
+    private static long findLineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    //позиция сразу после первой строки суммы блока не раньше from: с неё начинается следующий блок
+    private static long findBlockEnd(FileChannel channel, long from, long size) throws IOException {
+        byte[] marker = ("\n" + BLOCK_LINE + ",").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (long position = from; position < size; ) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i + marker.length <= read; i++) {
+                if (Arrays.equals(buffer.array(), i, i + marker.length, marker, 0, marker.length)) {
+                    return findLineEnd(channel, position + i + 1, size);
+                }
+            }
+            //с перекрытием, чтобы не пропустить метку на границе чтений
+            position += Math.max(1, read - marker.length + 1);
+        }
+        return size;
+    }
+
+    //blocks - часть начинается на границе блока и проверяет суммы своих блоков
+    private static Chunk parseChunk(FileChannel channel, long start, long end, UnaryOperator<String> migrator,
+                                    boolean blocks) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                break;
+            }
+        }
+        if (blocks) {
+            BlockVerifier verifier = new BlockVerifier();
+            verifier.update(buffer.array(), 0, buffer.position());
+            verifier.finish();
+        }
+        Chunk chunk = new Chunk(migrator);
+        chunk.accept(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+        return chunk;
+    }
+
+    //запись вида id,type,name,status,description,startTime,duration,epic начиная с позиции from;
+    //null, если в строке другое число полей (заголовок, строка контрольной точки)
+    static Task parse(String line, int from) {
+        return parse(line, from, line.length(), new int[FIELDS - 1]);
+    }
+
+    //строка записи - часть text между from и end
+    private static Task parse(String line, int from, int end, int[] commas) {
+        int found = 0;
+        for (int i = line.indexOf(',', from); i >= 0 && i < end; i = line.indexOf(',', i + 1)) {
+            if (found == commas.length) {
+                return null;
+            }
+            commas[found++] = i;
+        }
+        if (found != commas.length) {
+            return null;
+        }
+        int id = Integer.parseInt(line, from, commas[0], 10);
+        TaskType type = TYPES[find(TYPES, line, commas[0] + 1, commas[1])];
+        String name = unescape(line, commas[1] + 1, commas[2]);
+        TaskStatus status = STATUSES[find(STATUSES, line, commas[2] + 1, commas[3])];
+        String description = unescape(line, commas[3] + 1, commas[4]);
+        LocalDateTime startTime = parseDateTime(line, commas[4] + 1, commas[5]);
+        Duration duration = Duration.ofMinutes(Long.parseLong(line, commas[5] + 1, commas[6], 10));
+
+        Task task;
+        if (type == TaskType.EPIC) {
+            Epic epic = new Epic(name, description);
+            epic.setStatus(status);
+            task = epic;
+        } else if (type == TaskType.SUBTASK) {
+            int epicId = Integer.parseInt(line, commas[6] + 1, end, 10);
+            task = new Subtask(name, description, status, epicId, startTime, duration);
+        } else {
+            task = new Task(name, description, status, startTime, duration);
+        }
+        task.setId(id);
+        return task;
+    }
+
+    //как Enum.valueOf, но без выделения подстроки
+    private static int find(Enum<?>[] constants, String line, int start, int end) {
+        for (int i = 0; i < constants.length; i++) {
+            String name = constants[i].name();
+            if (name.length() == end - start && line.regionMatches(start, name, 0, name.length())) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Неизвестное значение: %s.", line.substring(start, end)));
+    }
+
+    //dd.MM.yyyy HH:mm:ss разбирается по фиксированным позициям, прочие записи - форматтером
+    private static LocalDateTime parseDateTime(String line, int start, int end) {
+        if (start == end) {
+            return null;
+        }
+        if (end - start != 19 || line.charAt(start + 2) != '.' || line.charAt(start + 5) != '.'
+                || line.charAt(start + 10) != ' ' || line.charAt(start + 13) != ':' || line.charAt(start + 16) != ':') {
+            return LocalDateTime.parse(line.subSequence(start, end), DATE_TIME_FORMATTER);
+        }
+        return LocalDateTime.of(Integer.parseInt(line, start + 6, start + 10, 10),
+                Integer.parseInt(line, start + 3, start + 5, 10),
+                Integer.parseInt(line, start, start + 2, 10),
+                Integer.parseInt(line, start + 11, start + 13, 10),
+                Integer.parseInt(line, start + 14, start + 16, 10),
+                Integer.parseInt(line, start + 17, start + 19, 10));
+    }
+
+    //сверка сумм блоков по байтам целых строк, начиная с границы блока
+    private static final class BlockVerifier {
+        private static final byte[] PREFIX = (BLOCK_LINE + ",").getBytes(StandardCharsets.US_ASCII);
+        private final CRC32C crc = new CRC32C();
+        //строки после последней суммы: в конце тела их быть не должно
+        private boolean pending;
+
+        void update(byte[] bytes, int from, int end) {
+            int lineStart = from;
+            while (lineStart < end) {
+                int lineEnd = lineStart;
+                while (lineEnd < end && bytes[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                int next = (lineEnd < end) ? lineEnd + 1 : end;
+                if (lineEnd - lineStart >= PREFIX.length
+                        && Arrays.equals(bytes, lineStart, lineStart + PREFIX.length, PREFIX, 0, PREFIX.length)) {
+                    if (crc.getValue() != parseHex(bytes, lineStart + PREFIX.length, lineEnd)) {
+                        throw corrupted();
+                    }
+                    crc.reset();
+                    pending = false;
+                } else {
+                    crc.update(bytes, lineStart, next - lineStart);
+                    pending = true;
+                }
+                lineStart = next;
+            }
+        }
+
+        void finish() {
+            if (pending) {
+                throw corrupted();
+            }
+        }
+
+        private static long parseHex(byte[] bytes, int from, int end) {
+            if (end > from && bytes[end - 1] == '\r') {
+                end--;
+            }
+            long value = 0;
+            for (int i = from; i < end; i++) {
+                int digit = Character.digit(bytes[i], 16);
+                if (digit < 0 || i - from >= 8) {
+                    throw corrupted();
+                }
+                value = value << 4 | digit;
+            }
+            return value;
+        }
+    }
+
+    //строки тела снимка; после каждых BLOCK_LINES строк и в конце идёт строка с CRC32C их байт
+    static final class BlockWriter {
+        private final CRC32C crc = new CRC32C();
+        private final Writer writer;
+        private int lines;
+
+        BlockWriter(OutputStream out) {
+            writer = new BufferedWriter(new OutputStreamWriter(new CheckedOutputStream(out, crc),
+                    StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        //строка вместе с переводом строки
+        void write(String line) throws IOException {
+            writer.write(line);
+            if (++lines == BLOCK_LINES) {
+                endBlock();
+            }
+        }
+
+        void finish() throws IOException {
+            if (lines > 0) {
+                endBlock();
+            }
+            writer.flush();
+        }
+
+        private void endBlock() throws IOException {
+            writer.flush();
+            writer.write(String.format("%s,%08x\n", BLOCK_LINE, crc.getValue()));
+            writer.flush();
+            crc.reset();
+            lines = 0;
+        }
+    }
+
+    //записи части файла, наибольший id, расписание, значения эпиков и последняя строка контрольной точки.
+    //migrator - цепочка миграций для записей старой версии схемы, null для текущей
+    private static final class Chunk {
+        private final List<Task> tasks = new ArrayList<>();
+        private final int[] commas = new int[FIELDS - 1];
+        private final UnaryOperator<String> migrator;
+        private int maxId;
+        private int generation;
+        private int counter;
+        //null, пока не встретилась строка расписания: в снимке её нет
+        private List<Integer> schedule;
+        private final List<Snapshot.EpicRollup> rollups = new ArrayList<>();
+
+        Chunk(UnaryOperator<String> migrator) {
+            this.migrator = migrator;
+        }
+
+        void accept(String text) {
+            int from = 0;
+            while (from < text.length()) {
+                int newLine = text.indexOf('\n', from);
+                int next = (newLine < 0) ? text.length() : newLine + 1;
+                int end = (newLine < 0) ? text.length() : newLine;
+                if (end > from && text.charAt(end - 1) == '\r') {
+                    end--;
+                }
+                if (end > from && Character.isLetter(text.charAt(from))) {
+                    acceptService(text, from, end);
+                    from = next;
+                    continue;
+                }
+                Task task;
+                if (migrator == null) {
+                    task = parse(text, from, end, commas);
+                } else {
+                    String record = migrator.apply(text.substring(from, end));
+                    task = parse(record, 0, record.length(), commas);
+                }
+                if (task != null) {
+                    tasks.add(task);
+                    maxId = Math.max(maxId, task.getId());
+                }
+                from = next;
+            }
+        }
+
+        //строки после записей: контрольная точка, расписание, накопленные значения эпиков; прочие пропускаются
+        private void acceptService(String text, int from, int end) {
+            if (isService(text, from, end, CHECKPOINT)) {
+                int first = from + CHECKPOINT.length();
+                int second = text.indexOf(',', first + 1);
+                generation = Integer.parseInt(text, first + 1, second, 10);
+                counter = Integer.parseInt(text, second + 1, end, 10);
+            } else if (isService(text, from, end, SCHEDULE)) {
+                if (schedule == null) {
+                    schedule = new ArrayList<>();
+                }
+                for (int start = from + SCHEDULE.length() + 1; start < end; ) {
+                    int comma = text.indexOf(',', start);
+                    int stop = (comma < 0 || comma > end) ? end : comma;
+                    schedule.add(Integer.parseInt(text, start, stop, 10));
+                    start = stop + 1;
+                }
+            } else if (isService(text, from, end, ROLLUP)) {
+                String[] fields = text.substring(from + ROLLUP.length() + 1, end).split(",", -1);
+                rollups.add(new Snapshot.EpicRollup(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                        fields[2].isEmpty() ? null : TaskStatus.valueOf(fields[2]),
+                        parseDateTime(fields[3], 0, fields[3].length()),
+                        parseDateTime(fields[4], 0, fields[4].length()), Long.parseLong(fields[5])));
+            }
+        }
+
+        private static boolean isService(String text, int from, int end, String name) {
+            int after = from + name.length();
+            return text.startsWith(name, from) && (after == end || after < end && text.charAt(after) == ',');
+        }
+
+        //строка контрольной точки - последняя в файле, поэтому берётся из последней части, где она есть
+        void merge(Chunk next) {
+            tasks.addAll(next.tasks);
+            if (next.schedule != null) {
+                if (schedule == null) {
+                    schedule = new ArrayList<>();
+                }
+                schedule.addAll(next.schedule);
+            }
+            rollups.addAll(next.rollups);
+            maxId = Math.max(maxId, next.maxId);
+            if (next.generation != 0 || next.counter != 0) {
+                generation = next.generation;
+                counter = next.counter;
+            }
+        }
+
+        Snapshot toSnapshot() {
+            //накопленные значения эпиков пишутся вместе с расписанием
+            return new Snapshot(tasks, generation, Math.max(maxId, counter), schedule,
+                    (schedule == null) ? null : rollups);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package service;
+
+//когда записанные изменения сбрасываются на диск (fsync)
+public enum Durability {
+    //после каждой операции: подтверждённое изменение переживает отключение питания
+    SYNC,
+    //как SYNC, подтверждённое изменение уже на диске, но операции из разных потоков,
+    //ждущие сброса одновременно, делят один вызов fsync
+    GROUP,
+    //журнал и слоты сбрасывает операционная система. Снимок, заменяемый целиком,
+    //в любом режиме пишется с fsync: иначе при сбое не было бы ни старого файла, ни нового
+    ASYNC
+}
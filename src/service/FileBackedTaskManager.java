@@ -3,50 +3,747 @@ package service;
 import model.*;
 import exception.*;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 public class FileBackedTaskManager extends InMemoryTaskManager {
+    private static final String CREATE = "CREATE";
+    private static final String UPDATE = "UPDATE";
+    private static final String DELETE = "DELETE";
+    private static final String DELETE_ALL = "DELETE_ALL";
+    private static final String CHECKPOINT = CsvSnapshotReader.CHECKPOINT;
+
     private final File data;
+    private final PersistenceMode mode;
+    private final Durability durability;
+    //читается и фоновыми потоками записи
+    private volatile SnapshotFormat snapshotFormat = SnapshotFormat.CSV;
+    //журнал операций, null в режиме полной перезаписи файла
+    private final WriteAheadLog log;
+    //хранилище со слотами фиксированного размера, null вне режимов MAPPED и PAGED
+    private final SlotTaskStore store;
+    //внутри пакета файл не перезаписывается после каждой операции, а сохраняется один раз в конце
+    private boolean batchInProgress;
+    private final List<String> pendingRecords = new ArrayList<>();
+    //пороги журнала, после которых в фоне пишется контрольная точка
+    private int checkpointMaxRecords = 10_000;
+    private long checkpointMaxBytes = 8L * 1024 * 1024;
+    private ExecutorService checkpointExecutor;
+    private Future<?> checkpointInProgress;
+    //поколение снимка, который при следующей контрольной точке станет .bak: его сегменты ещё нужны
+    private int backupGeneration;
+    //отложенная запись: изменения отмечаются версией, фоновый поток пишет снимок последней версии.
+    //все изменяющие методы выполняются под монитором менеджера, чтобы поток мог снять согласованный срез
+    private long writeBehindLagMillis = 50;
+    private int writeBehindMaxPending = 10_000;
+    private long dirtyVersion;
+    private long writtenVersion;
+    private long flushVersion;
+    private boolean closing;
+    private Thread writeBehindThread;
+    private ManagerSaveException writeBehindError;
+    //файл снимка записан этим менеджером после последнего изменения, его можно отдать как резервную копию
+    private boolean snapshotCurrent;
+    //журнал просмотров, по нему история восстанавливается при загрузке
+    private final HistoryLog historyLog;
+    //пишутся ли просмотры в журнал: по умолчанию только в режимах, которые и так дописывают файлы
+    //на каждую операцию, в SNAPSHOT и WRITE_BEHIND - после setViewLogging(true)
+    private boolean viewLogging;
 
     public FileBackedTaskManager(File data) {
+        this(data, PersistenceMode.SNAPSHOT);
+    }
+
+    public FileBackedTaskManager(File data, PersistenceMode mode) {
+        this(data, mode, Durability.ASYNC);
+    }
+
+    public FileBackedTaskManager(File data, PersistenceMode mode, Durability durability) {
         this.data = data;
+        this.mode = mode;
+        this.durability = durability;
+        this.log = (mode == PersistenceMode.WRITE_AHEAD_LOG) ? new WriteAheadLog(getLogFile(data), durability) : null;
+        this.store = (mode == PersistenceMode.MAPPED || mode == PersistenceMode.PAGED)
+                ? new SlotTaskStore(data, durability, mode == PersistenceMode.MAPPED) : null;
+        this.historyLog = new HistoryLog(getHistoryFile(data));
+        this.viewLogging = mode == PersistenceMode.WRITE_AHEAD_LOG || mode == PersistenceMode.MAPPED
+                || mode == PersistenceMode.PAGED;
     }
 
-    private void save() throws ManagerSaveException {
-        try (FileWriter writer = new FileWriter(data)) {
-            writer.write("id,type,name,status,startTime,description,startTime,duration,epic\n");
-            writeCollection(writer, tasks.values());
-            writeCollection(writer, epics.values());
-            writeCollection(writer, subtasks.values());
+    public synchronized void setViewLogging(boolean enabled) {
+        viewLogging = enabled;
+    }
+
+    public synchronized void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = snapshotFormat;
+        snapshotCurrent = false;
+    }
+
+    //группа сброса журнала в режиме Durability.GROUP: ведущий ждёт до maxDelayMillis мс maxRecords записей
+    public void setGroupCommit(int maxRecords, long maxDelayMillis) {
+        if (log != null) {
+            log.setGroupCommit(maxRecords, maxDelayMillis);
+        }
+    }
+
+    //журнал лежит рядом с файлом снимка
+    public static File getLogFile(File data) {
+        return new File(data.getPath() + ".wal");
+    }
+
+    public static File getHistoryFile(File data) {
+        return new File(data.getPath() + ".history");
+    }
+
+    //чтение идёт под тем же монитором, что и изменения: HTTP-сервер вызывает менеджер из пула потоков
+    @Override
+    public synchronized Optional<Task> getTask(int id) {
+        Optional<Task> task = super.getTask(id);
+        task.ifPresent(this::persistView);
+        return task;
+    }
+
+    @Override
+    public synchronized Optional<Epic> getEpic(int id) {
+        Optional<Epic> epic = super.getEpic(id);
+        epic.ifPresent(this::persistView);
+        return epic;
+    }
+
+    @Override
+    public synchronized Optional<Subtask> getSubtask(int id) {
+        Optional<Subtask> subtask = super.getSubtask(id);
+        subtask.ifPresent(this::persistView);
+        return subtask;
+    }
+
+    @Override
+    public synchronized ArrayList<Task> getAllTasks() {
+        return super.getAllTasks();
+    }
+
+    @Override
+    public synchronized ArrayList<Epic> getAllEpics() {
+        return super.getAllEpics();
+    }
+
+    @Override
+    public synchronized ArrayList<Subtask> getAllSubtasks() {
+        return super.getAllSubtasks();
+    }
+
+    @Override
+    public synchronized List<Task> getTasks(int afterId, int limit) {
+        return super.getTasks(afterId, limit);
+    }
+
+    @Override
+    public synchronized List<Epic> getEpics(int afterId, int limit) {
+        return super.getEpics(afterId, limit);
+    }
+
+    @Override
+    public synchronized List<Subtask> getSubtasks(int afterId, int limit) {
+        return super.getSubtasks(afterId, limit);
+    }
+
+    @Override
+    public synchronized ArrayList<Subtask> getEpicSubtasks(int epicId) {
+        return super.getEpicSubtasks(epicId);
+    }
+
+    @Override
+    public synchronized List<Task> getHistory() {
+        return super.getHistory();
+    }
+
+    @Override
+    public synchronized List<Task> getPrioritizedTasks() {
+        return super.getPrioritizedTasks();
+    }
+
+    @Override
+    public synchronized List<Task> getPrioritizedTasks(LocalDateTime afterStart, int afterId, int limit) {
+        return super.getPrioritizedTasks(afterStart, afterId, limit);
+    }
+
+    @Override
+    public synchronized List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return super.getPrioritizedTasks(from, to);
+    }
+
+    @Override
+    public synchronized Optional<LocalDateTime> findFreeSlot(Duration duration, LocalDateTime notBefore,
+                                                             LocalDateTime notAfter) {
+        return super.findFreeSlot(duration, notBefore, notAfter);
+    }
+
+    void persistView(Task task) throws ManagerSaveException {
+        if (!viewLogging) {
+            return;
+        }
+        historyLog.append(task.getId());
+        if (historyLog.isCompactionDue()) {
+            historyLog.compact(getHistory().stream().mapToInt(Task::getId).toArray());
+        }
+    }
+
+    //в режимах MAPPED и PAGED записи изменяются на месте: задача и, для подзадачи,
+    //её эпик, статус которого мог измениться
+    private void persist(String operation, Task task) throws ManagerSaveException {
+        if (store != null) {
+            writeSlot(task);
+            if (task instanceof Subtask) {
+                writeSlot(epics.get(((Subtask) task).getEpicId()));
+            }
+            commitStore();
+            return;
+        }
+        persist(record(operation, task));
+    }
+
+    private void persistDelete(Task deleted) throws ManagerSaveException {
+        TaskType type = TaskType.valueOf(deleted.getClass().getSimpleName().toUpperCase());
+        if (store != null) {
+            openStore();
+            store.remove(deleted.getId());
+            if (type == TaskType.EPIC) {
+                store.removeSubtasksOf(deleted.getId());
+            } else if (type == TaskType.SUBTASK) {
+                writeSlot(epics.get(((Subtask) deleted).getEpicId()));
+            }
+            commitStore();
+            return;
+        }
+        persist(String.format("%s,%s,%d", DELETE, type, deleted.getId()));
+    }
+
+    private void persistDeleteAll(TaskType type) throws ManagerSaveException {
+        if (store != null) {
+            openStore();
+            store.removeAll(type);
+            if (type == TaskType.EPIC) {
+                store.removeAll(TaskType.SUBTASK);
+            } else if (type == TaskType.SUBTASK) {
+                epics.values().forEach(this::writeSlot);
+            }
+            commitStore();
+            return;
+        }
+        persist(DELETE_ALL + "," + type);
+    }
+
+    //менеджер, созданный конструктором, начинает с пустого хранилища, как и в остальных режимах
+    private void openStore() throws ManagerSaveException {
+        if (!store.isOpen()) {
+            store.create();
+        }
+    }
+
+    private void writeSlot(Task task) throws ManagerSaveException {
+        openStore();
+        store.put(task, counter);
+    }
+
+    //внутри пакета сброс на диск делается один раз в конце
+    private void commitStore() throws ManagerSaveException {
+        if (!batchInProgress) {
+            store.commit();
+        }
+    }
+
+    //в режиме журнала дописывается одна запись об операции, в режиме отложенной записи изменение
+    //только отмечается, иначе файл перезаписывается целиком
+    private void persist(String record) throws ManagerSaveException {
+        if (mode == PersistenceMode.WRITE_BEHIND) {
+            if (!batchInProgress) {
+                markDirty();
+            }
+        } else if (log == null) {
+            save();
+        } else if (batchInProgress) {
+            pendingRecords.add(record);
+        } else {
+            log.append(List.of(record));
+            checkpointIfNeeded();
+        }
+    }
+
+    //maxLagMillis - сколько фоновый поток копит изменения перед записью,
+    //maxPendingChanges - сколько незаписанных изменений допускается, прежде чем вызывающий поток будет ждать
+    public synchronized void setWriteBehind(long maxLagMillis, int maxPendingChanges) {
+        writeBehindLagMillis = maxLagMillis;
+        writeBehindMaxPending = maxPendingChanges;
+    }
+
+    private void markDirty() throws ManagerSaveException {
+        throwWriteBehindError();
+        dirtyVersion++;
+        if (writeBehindThread == null) {
+            writeBehindThread = new Thread(this::writeBehind, "write-behind-" + data.getName());
+            writeBehindThread.setDaemon(true);
+            writeBehindThread.start();
+        }
+        notifyAll();
+        //ожидание отпускает монитор менеджера, поэтому фоновый поток может снять срез и догнать изменения
+        while (dirtyVersion - writtenVersion > writeBehindMaxPending && writeBehindError == null) {
+            awaitWriteBehind();
+        }
+        throwWriteBehindError();
+    }
+
+    private void writeBehind() {
+        while (true) {
+            Snapshot view;
+            long version;
+            synchronized (this) {
+                try {
+                    while (dirtyVersion == writtenVersion && !closing) {
+                        wait();
+                    }
+                    if (dirtyVersion == writtenVersion) {
+                        return;
+                    }
+                    //изменения, пришедшие за время задержки, попадут в ту же запись
+                    long deadline = System.currentTimeMillis() + writeBehindLagMillis;
+                    long remaining = writeBehindLagMillis;
+                    while (remaining > 0 && !closing && flushVersion <= writtenVersion) {
+                        wait(remaining);
+                        remaining = deadline - System.currentTimeMillis();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                view = snapshotView(-1);
+                version = dirtyVersion;
+            }
+            try {
+                writeAtomically(view);
+            } catch (ManagerSaveException e) {
+                synchronized (this) {
+                    writeBehindError = e;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                writtenVersion = version;
+                notifyAll();
+            }
+        }
+    }
+
+    private void awaitWriteBehind() throws ManagerSaveException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("Program was interrupted waiting for the write-behind thread.");
+        }
+    }
+
+    private void throwWriteBehindError() throws ManagerSaveException {
+        if (writeBehindError != null) {
+            throw writeBehindError;
+        }
+    }
+
+    //после возврата все изменения, сделанные до вызова, лежат на диске
+    public synchronized void flush() throws ManagerSaveException {
+        if (mode == PersistenceMode.WRITE_BEHIND) {
+            long target = dirtyVersion;
+            flushVersion = Math.max(flushVersion, target);
+            notifyAll();
+            while (writtenVersion < target && writeBehindError == null) {
+                awaitWriteBehind();
+            }
+            throwWriteBehindError();
+        } else if (store != null) {
+            store.sync();
+        } else if (log != null) {
+            try {
+                log.sync();
+            } catch (IOException e) {
+                throw new ManagerSaveException("Program experienced an error trying to flush the log.");
+            }
+        }
+    }
+
+    //сбросить все изменения и остановить фоновые потоки
+    public void close() throws ManagerSaveException {
+        flush();
+        Thread writer;
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+            writer = writeBehindThread;
+            awaitCheckpoint();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (checkpointExecutor != null) {
+            checkpointExecutor.shutdown();
+        }
+        if (log != null) {
+            log.close();
+        }
+        if (store != null) {
+            store.close();
+        }
+        try {
+            historyLog.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Program experienced an error trying to save view history.");
+        }
+    }
+
+    public void setCheckpointThresholds(int maxRecords, long maxBytes) {
+        checkpointMaxRecords = maxRecords;
+        checkpointMaxBytes = maxBytes;
+    }
+
+    //по порогу новая точка не начинается, пока пишется предыдущая: записи просто копятся в журнале
+    private void checkpointIfNeeded() {
+        boolean idle = checkpointInProgress == null || checkpointInProgress.isDone();
+        if (idle && (log.getRecords() >= checkpointMaxRecords || log.getBytes() >= checkpointMaxBytes)) {
+            checkpoint();
+        }
+    }
+
+    //снимок со срезом на момент вызова пишется в фоне, следующие записи уходят в новый файл журнала.
+    //если предыдущая точка ещё пишется, вызов сначала дожидается её
+    public synchronized Future<?> checkpoint() {
+        if (log == null) {
+            throw new IllegalStateException("Контрольная точка доступна только в режиме журнала.");
+        }
+        awaitCheckpoint();
+        int generation = log.rotate();
+        Snapshot view = snapshotView(generation);
+        if (checkpointExecutor == null) {
+            checkpointExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "checkpoint-" + data.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        checkpointInProgress = checkpointExecutor.submit(() -> writeCheckpoint(view));
+        return checkpointInProgress;
+    }
+
+    private void awaitCheckpoint() throws ManagerSaveException {
+        if (checkpointInProgress == null) {
+            return;
+        }
+        try {
+            checkpointInProgress.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("Program was interrupted waiting for a checkpoint.");
+        } catch (ExecutionException e) {
+            //сегменты неудачной точки не удалены и войдут в следующую
+        }
+    }
+
+    //срез для записи в другом потоке: задачи и подзадачи при обновлении заменяются новыми объектами,
+    //поэтому копируются только ссылки, эпики изменяются на месте и копируются целиком
+    private Snapshot snapshotView(int generation) {
+        List<Task> view = new ArrayList<>(tasks.size() + epics.size() + subtasks.size());
+        view.addAll(tasks.values());
+        epics.values().forEach(epic -> {
+            Epic epicCopy = new Epic(epic);
+            epicCopy.setId(epic.getId());
+            view.add(epicCopy);
+        });
+        view.addAll(subtasks.values());
+        return toSnapshot(view, generation);
+    }
+
+    //записи вместе с порядком расписания и накопленными значениями эпиков: загрузка строит по ним
+    //расписание без сортировки и сверяет эпики с подзадачами
+    private Snapshot toSnapshot(List<Task> view, int generation) {
+        List<Snapshot.EpicRollup> rollups = new ArrayList<>(epics.size());
+        epics.values().forEach(epic -> rollups.add(Snapshot.EpicRollup.of(epic)));
+        return new Snapshot(view, generation, counter, prioritizedTasks.ids(), rollups);
+    }
+
+    //сегменты после предыдущей контрольной точки остаются: вместе с .bak они заменяют повреждённый снимок
+    private void writeCheckpoint(Snapshot view) {
+        writeAtomically(view);
+        try {
+            log.deleteSegmentsUpTo(backupGeneration);
+            backupGeneration = view.generation();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Program experienced an error trying to write a checkpoint.");
+        }
+    }
+
+    //временный файл заменяет снимок одним переименованием, прежний снимок остаётся в <файл>.bak
+    private void writeAtomically(Snapshot view) throws ManagerSaveException {
+        writeAtomically(view, true);
+    }
+
+    //force == false: снимок и каталог не сбрасываются, замена остаётся атомарной
+    private void writeAtomically(Snapshot view, boolean force) throws ManagerSaveException {
+        File temp = new File(data.getPath() + ".tmp");
+        try {
+            if (snapshotFormat == SnapshotFormat.BINARY) {
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp), 1 << 16)) {
+                    BinarySnapshotCodec.write(out, view);
+                }
+            } else {
+                writeCsv(temp, view);
+            }
+            keepBackup();
+            if (force) {
+                replaceDurably(temp, data);
+            } else {
+                Files.move(temp.toPath(), data.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
         } catch (IOException e) {
             throw new ManagerSaveException("Program experienced an error trying to save in file.");
         }
     }
 
+    static void replaceDurably(File temp, File target) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target.getAbsoluteFile().getParentFile().toPath());
+    }
+
+    //запись каталога хранит само переименование. Windows не открывает каталог как файл:
+    //там переименование сбрасывает файловая система, и шаг пропускается
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (AccessDeniedException | UnsupportedOperationException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    //сумма тела известна только после записи, поэтому она дописывается в заголовок на своё место
+    private void writeCsv(File target, Snapshot view) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(target)) {
+            out.write(CsvSnapshotReader.header(0).getBytes(StandardCharsets.UTF_8));
+            CRC32C crc = new CRC32C();
+            writeCsvBody(new CheckedOutputStream(out, crc), view);
+            writeChecksum(out, crc.getValue());
+        }
+    }
+
+    private static void writeChecksum(FileOutputStream out, long checksum) throws IOException {
+        String header = CsvSnapshotReader.header(checksum);
+        int offset = CsvSnapshotReader.checksumOffset();
+        out.getChannel().write(ByteBuffer.wrap(header.substring(offset).getBytes(StandardCharsets.UTF_8)), offset);
+    }
+
+    //перевести CSV-снимок в текущую версию схемы одним проходом, не загружая задачи.
+    //возвращает false, если снимок бинарный или уже в текущей версии
+    public static boolean upgradeSnapshot(File file) throws ManagerBackupException {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            if (BinarySnapshotCodec.isBinary(file)) {
+                return false;
+            }
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+                 FileOutputStream out = new FileOutputStream(temp)) {
+                String header = readLine(in);
+                int version = CsvSnapshotReader.parseVersion(header);
+                if (version == CsvMigrations.CURRENT) {
+                    return false;
+                }
+                UnaryOperator<String> migrator = CsvMigrations.from(version);
+                long expectedChecksum = CsvSnapshotReader.parseChecksum(header);
+                CRC32C sourceCrc = new CRC32C();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new CheckedInputStream(in, sourceCrc), StandardCharsets.UTF_8), 1 << 16);
+                out.write(CsvSnapshotReader.header(0).getBytes(StandardCharsets.UTF_8));
+                CRC32C crc = new CRC32C();
+                CsvSnapshotReader.BlockWriter writer = new CsvSnapshotReader.BlockWriter(
+                        new CheckedOutputStream(out, crc));
+                if (!CsvSnapshotReader.isHeader(header) && !header.isEmpty()) {
+                    writer.write(migrator.apply(header.stripTrailing()) + "\n");
+                }
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    writer.write(migrator.apply(line) + "\n");
+                }
+                writer.finish();
+                if (expectedChecksum >= 0 && sourceCrc.getValue() != expectedChecksum) {
+                    throw new SnapshotCorruptedException("Snapshot checksum does not match, the file is damaged.");
+                }
+                writeChecksum(out, crc.getValue());
+            }
+            replaceDurably(temp, file);
+            return true;
+        } catch (IOException e) {
+            throw new ManagerBackupException("Program experienced an error trying to upgrade a snapshot.");
+        } finally {
+            temp.delete();
+        }
+    }
+
+    //первая строка побайтно, чтобы остальное прошло через подсчёт суммы
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b >= 0 && b != '\n'; b = in.read()) {
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private void writeCsvBody(OutputStream out, Snapshot view) throws IOException {
+        CsvSnapshotReader.BlockWriter writer = new CsvSnapshotReader.BlockWriter(out);
+        writeCollection(writer, view.tasks());
+        List<Integer> schedule = view.schedule();
+        int from = 0;
+        do {
+            int to = Math.min(schedule.size(), from + CsvSnapshotReader.SCHEDULE_LINE);
+            writer.write(CsvSnapshotReader.scheduleLine(schedule, from, to));
+            from = to;
+        } while (from < schedule.size());
+        for (Snapshot.EpicRollup rollup : view.rollups()) {
+            writer.write(CsvSnapshotReader.rollupLine(rollup));
+        }
+        if (view.generation() >= 0) {
+            writer.write(String.format("%s,%d,%d\n", CHECKPOINT, view.generation(), view.counter()));
+        }
+        writer.finish();
+    }
+
+    //резервная копия на ходу: под блокировкой менеджера только выбирается источник - актуальный файл снимка
+    //или срез ссылок. CSV в потоке идёт без контрольной суммы заголовка
+    public void backup(OutputStream out) throws ManagerSaveException {
+        FileChannel snapshot = null;
+        Snapshot view = null;
+        SnapshotFormat format;
+        try {
+            synchronized (this) {
+                format = snapshotFormat;
+                if (snapshotCurrent) {
+                    snapshot = FileChannel.open(data.toPath(), StandardOpenOption.READ);
+                } else {
+                    view = snapshotView(0);
+                }
+            }
+            if (snapshot != null) {
+                try (FileChannel source = snapshot) {
+                    WritableByteChannel target = Channels.newChannel(out);
+                    for (long position = 0, size = source.size(); position < size; ) {
+                        position += source.transferTo(position, size - position, target);
+                    }
+                }
+            } else if (format == SnapshotFormat.BINARY) {
+                OutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+                BinarySnapshotCodec.write(buffered, view);
+                buffered.flush();
+            } else {
+                out.write(CsvSnapshotReader.header().getBytes(StandardCharsets.UTF_8));
+                writeCsvBody(out, view);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Program experienced an error trying to write a backup.");
+        }
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    private void keepBackup() throws IOException {
+        if (!data.exists()) {
+            return;
+        }
+        Path backup = getBackupFile(data).toPath();
+        Files.deleteIfExists(backup);
+        try {
+            Files.createLink(backup, data.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            //файловая система без жёстких ссылок или отказ в ссылке: резервная копия делается копированием
+            Files.copy(data.toPath(), backup, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    //предыдущий снимок, к которому откатывается загрузка повреждённого
+    public static File getBackupFile(File data) {
+        return new File(data.getPath() + ".bak");
+    }
+
+    private void save() throws ManagerSaveException {
+        if (batchInProgress) {
+            return;
+        }
+        List<Task> all = new ArrayList<>(tasks.size() + epics.size() + subtasks.size());
+        all.addAll(tasks.values());
+        all.addAll(epics.values());
+        all.addAll(subtasks.values());
+        snapshotCurrent = false;
+        //при Durability.ASYNC снимок после операции не сбрасывается на диск, как и журнал в этом режиме
+        writeAtomically(toSnapshot(all, -1), durability != Durability.ASYNC);
+        snapshotCurrent = true;
+    }
+
     private String toString(Task task) {
         StringBuilder result = new StringBuilder();
         TaskType taskType = TaskType.valueOf(task.getClass().getSimpleName().toUpperCase());
-        result.append(String.format("%d,%s,%s,%s,%s,%s,%d,", task.getId(), taskType, task.getName(), task.getStatus(),
-                        task.getDescription(), formatDateTime(task.getStartTime()), (task.getDuration() == null) ? 0 : task.getDuration().toMinutes()));
+        result.append(String.format("%d,%s,%s,%s,%s,%s,%d,", task.getId(), taskType,
+                        CsvSnapshotReader.escape(task.getName()), task.getStatus(),
+                        CsvSnapshotReader.escape(task.getDescription()), formatDateTime(task.getStartTime()), (task.getDuration() == null) ? 0 : task.getDuration().toMinutes()));
         if (task instanceof Subtask) {
             result.append(((Subtask) task).getEpicId());
         }
-        result.append("\n");
         return result.toString();
     }
 
-    private void writeCollection(Writer writer, Collection<? extends Task> tasks) throws ManagerSaveException {
+    private void writeCollection(CsvSnapshotReader.BlockWriter writer, Collection<? extends Task> tasks)
+            throws ManagerSaveException {
         tasks.forEach(task -> {
             try {
-                writer.write(toString(task));
+                writer.write(toString(task) + "\n");
             } catch (IOException e) {
                 throw new ManagerSaveException("Program experienced an error trying to save in a file.");
             }
@@ -54,148 +751,501 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     }
 
     public static FileBackedTaskManager loadFromFile(File file) throws ManagerBackupException {
-        FileBackedTaskManager taskManager = new FileBackedTaskManager(file);
+        return loadFromFile(file, PersistenceMode.SNAPSHOT);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode) throws ManagerBackupException {
+        return loadFromFile(file, mode, Durability.ASYNC);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode, Durability durability)
+            throws ManagerBackupException {
+        return loadFromFile(file, mode, durability, 1);
+    }
+
+    //parallelism > 1: CSV-снимок разбирается частями в нескольких потоках, накопленные значения эпиков
+    //тоже считаются параллельно. Результат тот же, что при загрузке в одном потоке
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode, Durability durability,
+                                                     int parallelism) throws ManagerBackupException {
+        ForkJoinPool pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
         try {
-            List<String> allLines = Files.readAllLines(file.toPath());
-            Optional<Integer> idOptional = allLines
-                    .stream()
-                    .map(line -> fromString(taskManager, line))
-                    .filter(Objects::nonNull)
-                    .map(Task::getId)
-                    .max(Integer::compareTo);
-
-            taskManager.counter = idOptional.orElse(0);
-            taskManager.getAllEpics().forEach(taskManager::updateEpicDuration);
+            return loadFromFile(file, mode, durability, pool);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode, Durability durability,
+                                                      ForkJoinPool pool) throws ManagerBackupException {
+        FileBackedTaskManager taskManager = loadTasks(file, mode, durability, pool);
+        taskManager.loadHistory();
+        return taskManager;
+    }
+
+    private static FileBackedTaskManager loadTasks(File file, PersistenceMode mode, Durability durability,
+                                                   ForkJoinPool pool) throws ManagerBackupException {
+        FileBackedTaskManager taskManager = new FileBackedTaskManager(file, mode, durability);
+        if (mode == PersistenceMode.WRITE_AHEAD_LOG && !file.exists()) {
+            taskManager.replayLog(0);
+            return taskManager;
+        }
+        if (taskManager.store != null && !file.exists()) {
+            return taskManager;
+        }
+        try {
+            if (SlotTaskStore.isSlotFile(file)) {
+                SlotTaskStore source = (taskManager.store != null) ? taskManager.store
+                        : new SlotTaskStore(file, durability, false);
+                taskManager.restoreAll(new Snapshot(source.open(), 0, source.getCounter()), pool);
+                taskManager.counter = Math.max(taskManager.counter, source.getCounter());
+                if (source != taskManager.store) {
+                    source.close();
+                }
+                return taskManager;
+            }
         } catch (IOException e) {
             throw new ManagerBackupException("Program experienced an error trying to initialize from a file.");
         }
+        int generation = taskManager.restoreSnapshot(file, pool);
+        if (mode == PersistenceMode.WRITE_AHEAD_LOG) {
+            taskManager.replayLog(generation);
+            taskManager.backupGeneration = generation;
+        }
+        taskManager.convertToStore();
         return taskManager;
     }
 
-    private static Task fromString(FileBackedTaskManager taskManager, String s) {
-        String[] data = s.split(",", -1);
-        if (data.length != 8) {
-            return null;
+    //снимок CSV или бинарный, при повреждении - предыдущий из .bak.
+    //возвращает поколение журнала, вошедшее в снимок
+    int restoreSnapshot(File file, ForkJoinPool pool) throws ManagerBackupException {
+        Snapshot snapshot;
+        try {
+            try {
+                snapshot = readSnapshot(file, pool);
+            } catch (SnapshotCorruptedException e) {
+                File backup = getBackupFile(file);
+                if (!backup.exists()) {
+                    throw e;
+                }
+                snapshot = readSnapshot(backup, pool);
+            }
+        } catch (IOException e) {
+            throw new ManagerBackupException("Program experienced an error trying to initialize from a file.");
         }
+        restoreAll(snapshot, pool);
+        counter = Math.max(counter, snapshot.counter());
+        return snapshot.generation();
+    }
 
-        int id = Integer.parseInt(data[0]);
-        TaskType type = TaskType.valueOf(data[1]);
-        String name = data[2];
-        TaskStatus status = TaskStatus.valueOf(data[3]);
-        String description = data[4];
-        LocalDateTime startTime = (data[5].isEmpty()) ? null : LocalDateTime.parse(data[5], DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss"));
-        Duration duration = Duration.ofMinutes(Long.parseLong(data[6]));
+    //история собирается за один проход по журналу просмотров, просмотры удалённых задач пропускаются.
+    //в истории оказывается текущее состояние задачи, а не состояние на момент просмотра
+    private void loadHistory() throws ManagerBackupException {
+        int[] ids;
+        try {
+            ids = historyLog.read();
+        } catch (IOException e) {
+            throw new ManagerBackupException("Program experienced an error trying to load view history.");
+        }
+        List<Task> viewed = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Task task = tasks.get(id);
+            if (task == null) {
+                task = epics.get(id);
+            }
+            if (task == null) {
+                task = subtasks.get(id);
+            }
+            if (task != null) {
+                viewed.add(task);
+            }
+        }
+        restoreHistory(viewed);
+    }
 
-        if (type == TaskType.TASK) {
-            Task task = new Task(name, description, status, startTime, duration);
-            task.setId(id);
-            taskManager.tasks.put(task.getId(), task);
-            return task;
-        } else if (type == TaskType.EPIC) {
-            Epic epic = new Epic(name, description);
-            epic.setStatus(status);
-            epic.setId(id);
-            taskManager.epics.put(epic.getId(), epic);
-            return epic;
-        } else if (type == TaskType.SUBTASK) {
-            int epicId = Integer.parseInt(data[7]);
-            Subtask subtask = new Subtask(name, description, status, epicId, startTime, duration);
-            subtask.setId(id);
-            taskManager.subtasks.put(subtask.getId(), subtask);
-
-            Epic epic = taskManager.epics.get(epicId);
-            epic.addSubtasksId(subtask.getId());
-            return subtask;
+    private Snapshot readSnapshot(File file, ForkJoinPool pool) throws IOException {
+        if (BinarySnapshotCodec.isBinary(file)) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+                snapshotFormat = SnapshotFormat.BINARY;
+                return BinarySnapshotCodec.read(in, file.length());
+            }
+        }
+        return CsvSnapshotReader.read(file, pool);
+    }
+
+    //снимок, загруженный в режиме MAPPED или PAGED, переписывается в слоты: иначе первое изменение создало бы
+    //пустое хранилище на месте файла
+    private void convertToStore() throws ManagerSaveException {
+        if (store == null) {
+            return;
+        }
+        store.create();
+        tasks.values().forEach(this::writeSlot);
+        epics.values().forEach(this::writeSlot);
+        subtasks.values().forEach(this::writeSlot);
+        store.sync();
+    }
+
+    //повторить операции журнала поверх снимка методами InMemoryTaskManager, которые в журнал не пишут
+    private void replayLog(int checkpointGeneration) throws ManagerBackupException {
+        try {
+            for (String record : log.readRecords(checkpointGeneration)) {
+                replay(record);
+            }
+        } catch (RuntimeException e) {
+            throw new ManagerBackupException("Program experienced an error trying to replay the log.");
+        }
+    }
+
+    void replay(String record) {
+        String[] parts = record.split(",", 2);
+        switch (parts[0]) {
+            case CREATE: {
+                Task task = CsvSnapshotReader.parse(record, CREATE.length() + 1);
+                //создание повторяется с тем же id: счётчик ставится прямо перед ним
+                int lastId = counter;
+                counter = task.getId() - 1;
+                if (task instanceof Epic) {
+                    super.createEpic((Epic) task);
+                } else if (task instanceof Subtask) {
+                    super.createSubtask((Subtask) task);
+                } else {
+                    super.createTask(task);
+                }
+                counter = Math.max(lastId, task.getId());
+                break;
+            }
+            case UPDATE: {
+                Task task = CsvSnapshotReader.parse(record, UPDATE.length() + 1);
+                if (task instanceof Epic) {
+                    super.updateEpic((Epic) task);
+                } else if (task instanceof Subtask) {
+                    super.updateSubtask((Subtask) task);
+                } else {
+                    super.updateTask(task);
+                }
+                break;
+            }
+            case DELETE: {
+                String[] data = parts[1].split(",");
+                int id = Integer.parseInt(data[1]);
+                switch (TaskType.valueOf(data[0])) {
+                    case TASK -> super.deleteTaskPerId(id);
+                    case EPIC -> super.deleteEpicPerId(id);
+                    case SUBTASK -> super.deleteSubtaskPerId(id);
+                }
+                break;
+            }
+            case DELETE_ALL: {
+                switch (TaskType.valueOf(parts[1])) {
+                    case TASK -> super.deleteAllTasks();
+                    case EPIC -> super.deleteAllEpics();
+                    case SUBTASK -> super.deleteAllSubtasks();
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException(String.format("Неизвестная запись журнала: %s.", record));
+        }
+    }
+
+    //положить записи снимка в хранилище: таблицы выделяются сразу под нужное число записей,
+    //накопленные значения эпиков считаются одним проходом после того, как прочитаны все подзадачи.
+    //эпики друг от друга не зависят, поэтому с пулом этот проход идёт параллельно
+    private void restoreAll(Snapshot snapshot, ForkJoinPool pool) throws ManagerBackupException {
+        List<Task> records = snapshot.tasks();
+        List<Subtask> subtaskRecords = new ArrayList<>();
+        int taskCount = 0;
+        int epicCount = 0;
+        for (Task task : records) {
+            if (task instanceof Epic) {
+                epicCount++;
+            } else if (task instanceof Subtask) {
+                subtaskRecords.add((Subtask) task);
+            } else {
+                taskCount++;
+            }
+        }
+        tasks.ensureCapacity(tasks.size() + taskCount);
+        epics.ensureCapacity(epics.size() + epicCount);
+        subtasks.ensureCapacity(subtasks.size() + subtaskRecords.size());
+        for (Task task : records) {
+            if (task instanceof Epic) {
+                epics.put(task.getId(), (Epic) task);
+            } else if (task instanceof Subtask) {
+                subtasks.put(task.getId(), (Subtask) task);
+            } else {
+                tasks.put(task.getId(), task);
+            }
+        }
+        IntHashMap<List<Subtask>> subtasksByEpic = new IntHashMap<>(epicCount);
+        for (Subtask subtask : subtaskRecords) {
+            if (!epics.containsKey(subtask.getEpicId())) {
+                throw new ManagerBackupException(String.format("Не найден эпик %s подзадачи %s.",
+                        subtask.getEpicId(), subtask.getId()));
+            }
+            List<Subtask> group = subtasksByEpic.get(subtask.getEpicId());
+            if (group == null) {
+                group = new ArrayList<>();
+                subtasksByEpic.put(subtask.getEpicId(), group);
+            }
+            group.add(subtask);
+        }
+        if (pool == null) {
+            subtasksByEpic.forEach((epicId, group) -> epics.get(epicId).addSubtasks(group));
+        } else {
+            List<Map.Entry<Integer, List<Subtask>>> groups = new ArrayList<>(subtasksByEpic.entrySet());
+            pool.submit(() -> groups.parallelStream()
+                    .forEach(group -> epics.get(group.getKey()).addSubtasks(group.getValue()))).join();
+        }
+        //индексы хранят ключи по возрастанию, вставка не по порядку сдвигала бы массив ключей на каждой записи.
+        //в файле записи идут несколькими возрастающими сериями, такая сортировка почти линейна
+        records.sort(Comparator.comparingInt(Task::getId));
+        records.forEach(indexes::add);
+        verifyRollups(snapshot.rollups(), epicCount);
+        restoreSchedule(records, snapshot.schedule());
+    }
+
+    //снимок, записанный до появления накопленных значений, не проверяется
+    private void verifyRollups(List<Snapshot.EpicRollup> rollups, int epicCount) throws ManagerBackupException {
+        if (rollups == null) {
+            return;
+        }
+        if (rollups.size() != epicCount) {
+            throw new ManagerBackupException(String.format("В снимке %s эпиков, а накопленных значений - %s.",
+                    epicCount, rollups.size()));
+        }
+        for (Snapshot.EpicRollup rollup : rollups) {
+            Epic epic = epics.get(rollup.epicId());
+            if (epic == null || !rollup.matches(epic)) {
+                throw new ManagerBackupException(String.format(
+                        "Накопленные значения эпика %s в снимке не сходятся с его подзадачами.", rollup.epicId()));
+            }
+        }
+    }
+
+    //задачи расписания берутся по id в сохранённом порядке. В снимке задачи расписания не пересекаются,
+    //пересечение - порча, и снимок не загружается. В старом снимке порядка нет: в расписание попадают все задачи
+    //со временем, из пересекающихся - более ранняя, как при обновлении задачи на занятое время
+    private void restoreSchedule(List<Task> records, List<Integer> ids) throws ManagerBackupException {
+        List<Task> scheduled = new ArrayList<>();
+        if (ids == null) {
+            for (Task task : records) {
+                if (!(task instanceof Epic) && isTaskPeriodFilled(task)) {
+                    scheduled.add(task);
+                }
+            }
+            prioritizedTasks.addAll(scheduled);
+            return;
+        }
+        for (int id : ids) {
+            Task task = tasks.get(id);
+            if (task == null) {
+                task = subtasks.get(id);
+            }
+            if (task == null || !isTaskPeriodFilled(task)) {
+                throw new ManagerBackupException(String.format("Задача %s из расписания снимка не найдена.", id));
+            }
+            scheduled.add(task);
+        }
+        List<Task> overlapping = prioritizedTasks.addAll(scheduled);
+        if (!overlapping.isEmpty()) {
+            throw new ManagerBackupException(String.format(
+                    "Задача %s пересекается по времени с другой задачей расписания снимка.",
+                    overlapping.getFirst().getId()));
         }
-        return null;
     }
 
     @Override
     public Task createTask(Task task) throws ManagerAddTaskException {
-        Task creadtedTask =  super.createTask(task);
-        save();
-        return creadtedTask;
+        return durably(() -> {
+            Task creadtedTask = super.createTask(task);
+            persist(CREATE, tasks.get(creadtedTask.getId()));
+            return creadtedTask;
+        });
     }
 
     @Override
     public Epic createEpic(Epic epic) {
-        Epic createdEpic = super.createEpic(epic);
-        save();
-        return createdEpic;
+        return durably(() -> {
+            Epic createdEpic = super.createEpic(epic);
+            persist(CREATE, epics.get(createdEpic.getId()));
+            return createdEpic;
+        });
     }
 
     @Override
     public Subtask createSubtask(Subtask subtask) {
-        Subtask createdSubtask = super.createSubtask(subtask);
-        save();
-        return createdSubtask;
+        return durably(() -> {
+            Subtask createdSubtask = super.createSubtask(subtask);
+            persist(CREATE, subtasks.get(createdSubtask.getId()));
+            return createdSubtask;
+        });
     }
 
     @Override
     public void deleteAllTasks() {
-        super.deleteAllTasks();
-        save();
+        durably(() -> {
+            super.deleteAllTasks();
+            persistDeleteAll(TaskType.TASK);
+            return null;
+        });
     }
 
     @Override
     public void deleteAllEpics() {
-        super.deleteAllEpics();
-        save();
+        durably(() -> {
+            super.deleteAllEpics();
+            persistDeleteAll(TaskType.EPIC);
+            return null;
+        });
     }
 
     @Override
     public void deleteAllSubtasks() {
-        super.deleteAllSubtasks();
-        save();
+        durably(() -> {
+            super.deleteAllSubtasks();
+            persistDeleteAll(TaskType.SUBTASK);
+            return null;
+        });
     }
 
     @Override
     public Task updateTask(Task task) throws TaskNotFoundException {
-        super.updateTask(task);
-        save();
-        return task;
+        return durably(() -> {
+            super.updateTask(task);
+            persist(UPDATE, tasks.get(task.getId()));
+            return task;
+        });
     }
 
     @Override
     public Epic updateEpic(Epic epic) {
-        super.updateEpic(epic);
-        save();
-        return epic;
+        return durably(() -> {
+            super.updateEpic(epic);
+            persist(UPDATE, epics.get(epic.getId()));
+            return epic;
+        });
     }
 
     @Override
     public Subtask updateSubtask(Subtask subtask) {
-        super.updateSubtask(subtask);
-        save();
-        return subtask;
+        return durably(() -> {
+            super.updateSubtask(subtask);
+            persist(UPDATE, subtasks.get(subtask.getId()));
+            return subtask;
+        });
     }
 
     @Override
     public Task deleteTaskPerId(int id) {
-        Task deletedTask = super.deleteTaskPerId(id);
-        save();
-        return deletedTask;
+        return durably(() -> {
+            Task deletedTask = super.deleteTaskPerId(id);
+            persistDelete(deletedTask);
+            return deletedTask;
+        });
     }
 
     @Override
     public Epic deleteEpicPerId(int id) {
-        Epic detetedEpic = super.deleteEpicPerId(id);
-        save();
-        return detetedEpic;
+        return durably(() -> {
+            Epic detetedEpic = super.deleteEpicPerId(id);
+            persistDelete(detetedEpic);
+            return detetedEpic;
+        });
     }
 
     @Override
     public Subtask deleteSubtaskPerId(int id) {
-        Subtask deletedSubtask =  super.deleteSubtaskPerId(id);
-        save();
-        return deletedSubtask;
+        return durably(() -> {
+            Subtask deletedSubtask = super.deleteSubtaskPerId(id);
+            persistDelete(deletedSubtask);
+            return deletedSubtask;
+        });
+    }
+
+    @Override
+    public List<Task> applyBatch(List<Operation> operations) {
+        return durably(() -> applyBatchLocked(operations));
+    }
+
+    private List<Task> applyBatchLocked(List<Operation> operations) {
+        List<Task> result;
+        int lastId = counter;
+        pendingRecords.clear();
+        batchInProgress = true;
+        snapshotCurrent = false;
+        try {
+            result = super.applyBatch(operations);
+        } catch (RuntimeException e) {
+            //память уже откачена, записи журнала отбрасываются; только слоты пишутся по ходу пакета
+            batchInProgress = false;
+            pendingRecords.clear();
+            if (store != null && store.isOpen()) {
+                restoreSlots(operations, lastId);
+            }
+            throw e;
+        }
+        batchInProgress = false;
+        persistBatch();
+        return result;
+    }
+
+    //созданные пакетом id идут подряд после lastId
+    private void restoreSlots(List<Operation> operations, int lastId) throws ManagerSaveException {
+        for (int id = lastId + 1; id <= lastId + operations.size(); id++) {
+            store.remove(id);
+        }
+        for (Operation operation : operations) {
+            Task task = operation.getTask();
+            if (operation.getType() == OperationType.UPDATE) {
+                writeSlot((task instanceof Epic) ? epics.get(task.getId())
+                        : (task instanceof Subtask) ? subtasks.get(task.getId()) : tasks.get(task.getId()));
+            }
+            if (task instanceof Subtask && epics.containsKey(((Subtask) task).getEpicId())) {
+                writeSlot(epics.get(((Subtask) task).getEpicId()));
+            }
+        }
+        store.commit();
+    }
+
+    private void persistBatch() throws ManagerSaveException {
+        if (mode == PersistenceMode.WRITE_BEHIND) {
+            markDirty();
+        } else if (store != null) {
+            store.commit();
+        } else if (log == null) {
+            save();
+        } else {
+            log.append(pendingRecords);
+            checkpointIfNeeded();
+        }
+    }
+
+    //в режиме GROUP подтверждение ждёт сброса журнала вне монитора менеджера; вложенный вызов ждёт с внешним
+    private <T> T durably(Supplier<T> operation) {
+        T result;
+        long position;
+        synchronized (this) {
+            result = operation.get();
+            position = (log == null) ? 0 : log.getAppendedOffset();
+        }
+        if (log != null && durability == Durability.GROUP && !Thread.holdsLock(this)) {
+            log.awaitDurable(position);
+        }
+        return result;
+    }
+
+    private String record(String operation, Task task) {
+        return operation + "," + toString(task);
     }
 
     private String formatDateTime(LocalDateTime dateTime) {
         if (dateTime == null) {
             return "";
         }
-        return dateTime.format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss"));
+        return dateTime.format(CsvSnapshotReader.DATE_TIME_FORMATTER);
     }
 }
 
@@ -0,0 +1,118 @@
+package service;
+
+import exception.ManagerSaveException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+//журнал просмотров: id просмотренной задачи дописывается в конец файла четырьмя байтами.
+//повторные просмотры копят в файле устаревшие записи, поэтому, когда записей становится намного больше,
+//чем задач в истории, файл переписывается одной текущей историей.
+//fsync не делается: при сбое теряются последние просмотры, а не задачи
+class HistoryLog {
+    private static final int RECORD = Integer.BYTES;
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private final File file;
+    private FileChannel channel;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD);
+    private int records;
+    private int compactionRecords = MIN_COMPACTION_RECORDS;
+    //журнал, не прочитанный при загрузке, относится к чужому содержимому файла снимка: он не усекается,
+    //и просмотры в него не пишутся (foreign)
+    private boolean loaded;
+    private boolean foreign;
+
+    HistoryLog(File file) {
+        this.file = file;
+    }
+
+    //id в порядке последнего просмотра, каждый по одному разу. Запись, оборванная при сбое, отбрасывается
+    synchronized int[] read() throws IOException {
+        loaded = true;
+        if (!file.exists()) {
+            return new int[0];
+        }
+        byte[] content = Files.readAllBytes(file.toPath());
+        IntBuffer ids = ByteBuffer.wrap(content, 0, content.length - content.length % RECORD).asIntBuffer();
+        records = ids.remaining();
+        compactionRecords = Math.max(MIN_COMPACTION_RECORDS, records * 2);
+        //проход с конца: первое встреченное вхождение id и есть его последний просмотр
+        IntHashMap<Boolean> seen = new IntHashMap<>();
+        int[] order = new int[records];
+        int count = 0;
+        for (int i = records - 1; i >= 0; i--) {
+            int id = ids.get(i);
+            if (seen.put(id, Boolean.TRUE) == null) {
+                order[count++] = id;
+            }
+        }
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            int id = order[i];
+            order[i] = order[j];
+            order[j] = id;
+        }
+        return Arrays.copyOf(order, count);
+    }
+
+    synchronized void append(int id) throws ManagerSaveException {
+        if (foreign) {
+            return;
+        }
+        try {
+            if (channel == null) {
+                if (!loaded && file.length() > 0) {
+                    foreign = true;
+                    return;
+                }
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            record.clear();
+            record.putInt(id).flip();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            records++;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Program experienced an error trying to save view history.");
+        }
+    }
+
+    //пора ли переписать журнал: порог растёт вместе с историей, поэтому сжатие обходится в O(1) на просмотр
+    synchronized boolean isCompactionDue() {
+        return records >= compactionRecords;
+    }
+
+    //заменить журнал текущей историей: сначала временный файл, затем переименование
+    synchronized void compact(int[] ids) throws ManagerSaveException {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            ByteBuffer content = ByteBuffer.allocate(ids.length * RECORD);
+            content.asIntBuffer().put(ids);
+            Files.write(temp.toPath(), content.array());
+            close();
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            loaded = true;
+            records = ids.length;
+            compactionRecords = Math.max(MIN_COMPACTION_RECORDS, ids.length * 4);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Program experienced an error trying to compact view history.");
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -13,4 +13,7 @@ public interface HistoryManager {
     void remove(int id);
 
     void removeTasks(List<? extends Task> tasks);
+
+    //заменить историю задачами в порядке просмотра, например после загрузки из файла
+    void restore(List<? extends Task> tasks);
 }
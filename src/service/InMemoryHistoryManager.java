@@ -18,6 +18,23 @@ public class InMemoryHistoryManager implements HistoryManager {
 
     @Override
     public void addTask(Task task) {
+        Task taskCopy = copy(task);
+        remove(task.getId());
+        Node<Task> node = listNode.linkLast(taskCopy);
+        tasksIDHashMap.put(taskCopy.getId(), node);
+    }
+
+    //список и индекс строятся за один проход: повторов в restored нет, удалять из списка нечего
+    @Override
+    public void restore(List<? extends Task> tasks) {
+        tasksIDHashMap = new HashMap<>(tasks.size() * 2);
+        listNode = new TasksLinkedList<>();
+        for (Task task : tasks) {
+            tasksIDHashMap.put(task.getId(), listNode.linkLast(copy(task)));
+        }
+    }
+
+    private static Task copy(Task task) {
         Task taskCopy;
         if (task instanceof Subtask) {
             taskCopy = new Subtask(task.getName(), task.getDescription(), task.getStatus(), ((Subtask) task).getEpicId(),
@@ -29,9 +46,7 @@ public class InMemoryHistoryManager implements HistoryManager {
             taskCopy = new Task(task.getName(), task.getDescription(), task.getStatus(), task.getStartTime(), task.getDuration());
         }
         taskCopy.setId(task.getId());
-        remove(task.getId());
-        Node<Task> node = listNode.linkLast(taskCopy);
-        tasksIDHashMap.put(taskCopy.getId(), node);
+        return taskCopy;
     }
 
     @Override
@@ -3,6 +3,8 @@ package service;
 import exception.ManagerAddTaskException;
 import exception.TaskNotFoundException;
 import model.Epic;
+import model.Operation;
+import model.OperationType;
 import model.Subtask;
 import model.Task;
 import model.TaskStatus;
@@ -12,24 +14,20 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 public class InMemoryTaskManager implements TaskManager {
-    protected Map<Integer, Task> tasks;
-    protected Map<Integer, Epic> epics;
-    protected Map<Integer, Subtask> subtasks;
+    protected IntHashMap<Task> tasks;
+    protected IntHashMap<Epic> epics;
+    protected IntHashMap<Subtask> subtasks;
     private final HistoryManager historyManager;
     protected int counter;
-    protected Set<Task> prioritizedTasks = new TreeSet<>((o1, o2) -> {
-        int result = -1;
-        if (!isTaskPeriodFilled(o1) || !isTaskPeriodFilled(o2) || o1.getStartTime().isAfter(o2.getStartTime()))
-            result = 1;
-        else if (o1.getStartTime().equals(o2.getStartTime()))
-            result = 0;
-        return result;
-    });
+    protected ScheduleIndex prioritizedTasks = new ScheduleIndex();
+    protected TaskIndexes indexes = new TaskIndexes();
+    //режим отладки: сверять накопленные значения эпика с полным пересчётом по подзадачам
+    protected boolean checkEpicAggregates = Boolean.getBoolean("taskmanager.checkEpicAggregates");
 
     public InMemoryTaskManager() {
-        tasks = new HashMap<>();
-        epics = new HashMap<>();
-        subtasks = new HashMap<>();
+        tasks = new IntHashMap<>();
+        epics = new IntHashMap<>();
+        subtasks = new IntHashMap<>();
         counter = 0;
         historyManager = Managers.getDefaultHistory();
     }
@@ -43,6 +41,7 @@ public class InMemoryTaskManager implements TaskManager {
                 task.getDuration());
         newTask.setId(++counter);
         tasks.put(newTask.getId(), newTask);
+        indexes.add(newTask);
         task.setId(newTask.getId());
         if (isTaskPeriodFilled(task)) {
             prioritizedTasks.add(newTask);
@@ -55,6 +54,7 @@ public class InMemoryTaskManager implements TaskManager {
         Epic newEpic = new Epic(epic.getName(), epic.getDescription());
         newEpic.setId(++counter);
         epics.put(newEpic.getId(), newEpic);
+        indexes.add(newEpic);
         epic.setId(newEpic.getId());
         return epic;
     }
@@ -72,10 +72,12 @@ public class InMemoryTaskManager implements TaskManager {
                 subtask.getEpicId(), subtask.getStartTime(), subtask.getDuration());
         newSubtask.setId(++counter);
         subtasks.put(newSubtask.getId(), newSubtask);
+        indexes.add(newSubtask);
 
-        epic.addSubtasksId(newSubtask.getId());
-        updateEpicStatus(epic);
-        updateEpicDuration(epic);
+        TaskStatus epicStatus = epic.getStatus();
+        epic.addSubtask(newSubtask);
+        indexes.updateStatus(epic, epicStatus);
+        checkEpic(epic);
         subtask.setId(newSubtask.getId());
         if (isTaskPeriodFilled(subtask)) {
             prioritizedTasks.add(newSubtask);
@@ -149,6 +151,29 @@ public class InMemoryTaskManager implements TaskManager {
         return new ArrayList<>(subtasks.values());
     }
 
+    @Override
+    public List<Task> getTasks(int afterId, int limit) {
+        return tasks.valuesAfter(afterId, limit);
+    }
+
+    @Override
+    public List<Epic> getEpics(int afterId, int limit) {
+        return epics.valuesAfter(afterId, limit);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(int afterId, int limit) {
+        return subtasks.valuesAfter(afterId, limit);
+    }
+
+    public List<Task> findByStatus(TaskStatus status) {
+        return indexes.findByStatus(status);
+    }
+
+    public List<Task> findByStartRange(LocalDateTime from, LocalDateTime to) {
+        return indexes.findByStartRange(from, to);
+    }
+
     //сценарии для более простой демонстрации возможностей программы
     public static void printAllTasks(TaskManager manager) {
         System.out.println("Задачи:");
@@ -185,7 +210,8 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void deleteAllTasks() {
         historyManager.removeTasks(getAllTasks());
-        getAllTasks().forEach(prioritizedTasks::remove);
+        tasks.keySet().forEach(prioritizedTasks::remove);
+        tasks.values().forEach(indexes::remove);
         tasks.clear();
     }
 
@@ -193,7 +219,9 @@ public class InMemoryTaskManager implements TaskManager {
     public void deleteAllEpics() {
         historyManager.removeTasks(getAllEpics());
         historyManager.removeTasks(getAllSubtasks());
-        getAllSubtasks().forEach(prioritizedTasks::remove);
+        subtasks.keySet().forEach(prioritizedTasks::remove);
+        subtasks.values().forEach(indexes::remove);
+        epics.values().forEach(indexes::remove);
         subtasks.clear();
         epics.clear();
     }
@@ -201,12 +229,13 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void deleteAllSubtasks() {
         historyManager.removeTasks(getAllSubtasks());
-        getAllSubtasks().forEach(prioritizedTasks::remove);
+        subtasks.keySet().forEach(prioritizedTasks::remove);
+        subtasks.values().forEach(indexes::remove);
         subtasks.clear();
         epics.values().forEach(epic -> {
+            TaskStatus epicStatus = epic.getStatus();
             epic.deleteAllSubtaskId();
-            updateEpicStatus(epic);
-            updateEpicDuration(epic);
+            indexes.updateStatus(epic, epicStatus);
         });
     }
 
@@ -215,15 +244,14 @@ public class InMemoryTaskManager implements TaskManager {
         if (!tasks.containsKey(task.getId())) {
             throw new TaskNotFoundException(String.format("Не найдена задача с id %s.", task.getId()));
         }
-        Task oldTask = tasks.get(task.getId());
-        if (task.getStartTime() != oldTask.getStartTime() || task.getDuration() != oldTask.getDuration()
-                && prioritizedTasks.contains(task)) {
-            prioritizedTasks.remove(task);
-            if (isTaskPeriodCorrect(task)) {
-                prioritizedTasks.add(task);
-            }
+        Task updatedTask = new Task(task);
+        updatedTask.setId(task.getId());
+        prioritizedTasks.remove(task.getId());
+        if (isTaskPeriodFilled(updatedTask) && isTaskPeriodCorrect(updatedTask)) {
+            prioritizedTasks.add(updatedTask);
         }
-        tasks.put(task.getId(), task);
+        indexes.remove(tasks.put(updatedTask.getId(), updatedTask));
+        indexes.add(updatedTask);
         return task;
     }
 
@@ -248,20 +276,22 @@ public class InMemoryTaskManager implements TaskManager {
         if (currentSubtask.getEpicId() != subtask.getEpicId()) {
             throw new TaskNotFoundException("Перенос в другой эпик не доступен.");
         }
-        Subtask oldSubtask = subtasks.get(subtask.getId());
-        if (subtask.getStartTime() != oldSubtask.getStartTime() || subtask.getDuration() != oldSubtask.getDuration()
-                && prioritizedTasks.contains(subtask)) {
-            prioritizedTasks.remove(subtask);
-            if (isTaskPeriodCorrect(subtask)) {
-                prioritizedTasks.add(subtask);
-            }
+        Subtask updatedSubtask = new Subtask(subtask);
+        updatedSubtask.setId(subtask.getId());
+        prioritizedTasks.remove(subtask.getId());
+        if (isTaskPeriodFilled(updatedSubtask) && isTaskPeriodCorrect(updatedSubtask)) {
+            prioritizedTasks.add(updatedSubtask);
         }
 
-        subtasks.put(subtask.getId(), subtask);
+        subtasks.put(updatedSubtask.getId(), updatedSubtask);
+        indexes.remove(currentSubtask);
+        indexes.add(updatedSubtask);
 
         Epic epic = epics.get(currentSubtask.getEpicId());
-        updateEpicStatus(epic);
-        updateEpicDuration(epic);
+        TaskStatus epicStatus = epic.getStatus();
+        epic.updateSubtask(currentSubtask, updatedSubtask);
+        indexes.updateStatus(epic, epicStatus);
+        checkEpic(epic);
         return subtask;
     }
 
@@ -271,9 +301,8 @@ public class InMemoryTaskManager implements TaskManager {
             throw new TaskNotFoundException(String.format("Не найдена задача с id %s.", id));
         }
         historyManager.remove(id);
-        if (prioritizedTasks.contains(tasks.get(id))) {
-            prioritizedTasks.remove(tasks.get(id));
-        }
+        prioritizedTasks.remove(id);
+        indexes.remove(tasks.get(id));
         return tasks.remove(id);
     }
 
@@ -285,12 +314,12 @@ public class InMemoryTaskManager implements TaskManager {
         Epic epic = epics.get(id);
         if (epic != null) {
             epic.getSubtasksIds().forEach(subtaskId -> {
-                if (prioritizedTasks.contains(subtasks.get(subtaskId))) {
-                    prioritizedTasks.remove(subtasks.get(subtaskId));
-                }
+                prioritizedTasks.remove(subtaskId);
+                indexes.remove(subtasks.get(subtaskId));
                 subtasks.remove(subtaskId);
                 historyManager.remove(subtaskId);
             });
+            indexes.remove(epic);
             epics.remove(id);
             historyManager.remove(id);
         }
@@ -307,60 +336,162 @@ public class InMemoryTaskManager implements TaskManager {
             return null;
         }
         Epic epic = epics.get(subtask.getEpicId());
-        epic.deleteSubtaskId(id);
+        TaskStatus epicStatus = epic.getStatus();
+        epic.deleteSubtask(subtask);
+        indexes.updateStatus(epic, epicStatus);
+        indexes.remove(subtask);
+        checkEpic(epic);
 
-        updateEpicStatus(epic);
-        updateEpicDuration(epic);
         historyManager.remove(id);
-        prioritizedTasks.remove(subtask);
+        prioritizedTasks.remove(id);
         return subtasks.remove(id);
     }
 
     @Override
-    public List<Task> getHistory() {
-        return historyManager.getHistory();
+    public List<Task> applyBatch(List<Operation> operations) {
+        BatchValidator.validate(operations, tasks, epics, subtasks, prioritizedTasks);
+        //прежние версии обновляемых задач для отката; эпик изменяется на месте, от него хранится копия.
+        //задачи пакета могут обмениваться интервалами, поэтому прежние интервалы снимаются заранее
+        List<Task> previous = new ArrayList<>();
+        Set<Integer> previouslyScheduled = new HashSet<>();
+        for (Operation operation : operations) {
+            if (operation.getType() == OperationType.UPDATE) {
+                int id = operation.getTask().getId();
+                Task current = (operation.getTask() instanceof Epic) ? copyOf(epics.get(id))
+                        : (operation.getTask() instanceof Subtask) ? subtasks.get(id) : tasks.get(id);
+                previous.add(current);
+                if (prioritizedTasks.remove(id) != null) {
+                    previouslyScheduled.add(id);
+                }
+            }
+        }
+        int lastId = counter;
+        List<Task> result = new ArrayList<>(operations.size());
+        try {
+            for (Operation operation : operations) {
+                result.add(apply(operation));
+            }
+        } catch (RuntimeException e) {
+            rollback(lastId, previous, previouslyScheduled);
+            throw e;
+        }
+        return result;
     }
 
-    private void updateEpicStatus(Epic epic) {
-        if (epic == null) {
+    private static Epic copyOf(Epic epic) {
+        Epic copy = new Epic(epic.getName(), epic.getDescription());
+        copy.setId(epic.getId());
+        return copy;
+    }
+
+    //откат пакета, упавшего после проверки: созданные задачи удаляются от последней к первой, обновлённые
+    //возвращаются к прежним версиям. Восстановление идемпотентно, поэтому операция, упавшая на середине,
+    //откатывается так же, как применённые целиком
+    private void rollback(int lastId, List<Task> previous, Set<Integer> previouslyScheduled) {
+        for (int id = counter; id > lastId; id--) {
+            removeCreated(id);
+        }
+        counter = lastId;
+        for (Task task : previous) {
+            restore(task);
+        }
+        for (int id : previouslyScheduled) {
+            Task task = tasks.containsKey(id) ? tasks.get(id) : subtasks.get(id);
+            prioritizedTasks.add(task);
+        }
+    }
+
+    private void removeCreated(int id) {
+        prioritizedTasks.remove(id);
+        Task task = tasks.remove(id);
+        if (task != null) {
+            indexes.remove(task);
             return;
         }
-        ArrayList<Integer> subtasksIds = epic.getSubtasksIds();
-        if (subtasksIds.isEmpty()) {
-            epic.setStatus(TaskStatus.NEW);
+        Subtask subtask = subtasks.remove(id);
+        if (subtask != null) {
+            indexes.remove(subtask);
+            Epic epic = epics.get(subtask.getEpicId());
+            TaskStatus epicStatus = epic.getStatus();
+            epic.deleteSubtask(subtask);
+            indexes.updateStatus(epic, epicStatus);
             return;
         }
-        List<TaskStatus> statuses = subtasksIds
-                .stream()
-                .map(id -> subtasks.get(id))
-                .map(Task::getStatus)
-                .toList();
-        boolean includeNewTask = statuses.stream().anyMatch(status -> status == TaskStatus.NEW);
-        boolean includeInProgressTask = statuses.stream().anyMatch(status -> status == TaskStatus.IN_PROGRESS);
-        boolean includeDoneTask = statuses.stream().anyMatch(status -> status == TaskStatus.DONE);
+        Epic epic = epics.remove(id);
+        if (epic != null) {
+            indexes.remove(epic);
+        }
+    }
 
-        if (!includeNewTask && !includeInProgressTask && includeDoneTask) {
-            epic.setStatus(TaskStatus.DONE);
-        } else if (includeInProgressTask || includeDoneTask) {
-            epic.setStatus(TaskStatus.IN_PROGRESS);
+    private void restore(Task previousTask) {
+        int id = previousTask.getId();
+        if (previousTask instanceof Epic) {
+            Epic epic = epics.get(id);
+            epic.setName(previousTask.getName());
+            epic.setDescription(previousTask.getDescription());
+        } else if (previousTask instanceof Subtask) {
+            Subtask current = subtasks.get(id);
+            if (current != previousTask) {
+                prioritizedTasks.remove(id);
+                subtasks.put(id, (Subtask) previousTask);
+                indexes.remove(current);
+                indexes.add(previousTask);
+                Epic epic = epics.get(current.getEpicId());
+                TaskStatus epicStatus = epic.getStatus();
+                epic.updateSubtask(current, (Subtask) previousTask);
+                indexes.updateStatus(epic, epicStatus);
+            }
         } else {
-            epic.setStatus(TaskStatus.NEW);
+            Task current = tasks.get(id);
+            if (current != previousTask) {
+                prioritizedTasks.remove(id);
+                tasks.put(id, previousTask);
+                indexes.remove(current);
+                indexes.add(previousTask);
+            }
         }
     }
 
-    protected void updateEpicDuration(Epic epic) {
-        if (epic == null) {
-            return;
+    private Task apply(Operation operation) {
+        Task task = operation.getTask();
+        boolean create = operation.getType() == OperationType.CREATE;
+        if (task instanceof Epic) {
+            return create ? createEpic((Epic) task) : updateEpic((Epic) task);
         }
-        if (epic.getSubtasksIds().isEmpty()) {
-            epic.setStartTime(null);
-            epic.setEndTime(null);
-            epic.setDuration(null);
+        if (task instanceof Subtask) {
+            return create ? createSubtask((Subtask) task) : updateSubtask((Subtask) task);
+        }
+        return create ? createTask(task) : updateTask(task);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    protected void restoreHistory(List<? extends Task> viewed) {
+        historyManager.restore(viewed);
+    }
+
+    protected void checkEpic(Epic epic) {
+        if (!checkEpicAggregates || epic == null) {
+            return;
         }
         List<Subtask> epicSubtasks = epic.getSubtasksIds()
                 .stream()
                 .map(id -> subtasks.get(id))
                 .toList();
+        boolean includeNewTask = epicSubtasks.stream().anyMatch(task -> task.getStatus() == TaskStatus.NEW);
+        boolean includeInProgressTask = epicSubtasks.stream().anyMatch(task -> task.getStatus() == TaskStatus.IN_PROGRESS);
+        boolean includeDoneTask = epicSubtasks.stream().anyMatch(task -> task.getStatus() == TaskStatus.DONE);
+        TaskStatus status;
+        if (!includeNewTask && !includeInProgressTask && includeDoneTask) {
+            status = TaskStatus.DONE;
+        } else if (includeInProgressTask || includeDoneTask) {
+            status = TaskStatus.IN_PROGRESS;
+        } else {
+            status = TaskStatus.NEW;
+        }
         LocalDateTime startTime = epicSubtasks.stream()
                 .map(Task::getStartTime)
                 .filter(Objects::nonNull)
@@ -376,13 +507,31 @@ public class InMemoryTaskManager implements TaskManager {
                 .filter(Objects::nonNull)
                 .reduce(Duration.ZERO, Duration::plus);
 
-        epic.setStartTime(startTime);
-        epic.setEndTime(endTime);
-        epic.setDuration((duration == Duration.ZERO) ? null : duration);
+        if (status != epic.getStatus() || !Objects.equals(startTime, epic.getStartTime())
+                || !Objects.equals(endTime, epic.getEndTime())
+                || !Objects.equals(duration.isZero() ? null : duration, epic.getDuration())) {
+            throw new IllegalStateException(String.format("Данные эпика с id %s расходятся с полным пересчётом.",
+                    epic.getId()));
+        }
     }
 
     public List<Task> getPrioritizedTasks() {
-        return prioritizedTasks.stream().toList();
+        return prioritizedTasks.toList();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime afterStart, int afterId, int limit) {
+        return prioritizedTasks.pageAfter(afterStart, afterId, limit);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return prioritizedTasks.window(from, to);
+    }
+
+    @Override
+    public Optional<LocalDateTime> findFreeSlot(Duration duration, LocalDateTime notBefore, LocalDateTime notAfter) {
+        return prioritizedTasks.findFreeSlot(duration, notBefore, notAfter);
     }
 
     protected static boolean isIntervalsOverlap(Task task1, Task task2) {
@@ -396,10 +545,7 @@ public class InMemoryTaskManager implements TaskManager {
     }
 
     protected boolean isTaskPeriodCorrect(Task incomingTask) {
-        return getPrioritizedTasks()
-                .stream()
-                .filter(this::isTaskPeriodFilled)
-                .noneMatch(task -> isIntervalsOverlap(incomingTask, task));
+        return prioritizedTasks.isFree(incomingTask.getStartTime(), incomingTask.getEndTime(), incomingTask.getId());
     }
 
     protected boolean isTaskPeriodFilled(Task incomimgTask) {
@@ -0,0 +1,361 @@
+package service;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+//хранилище по int-ключу без упаковки в Integer и без отдельного узла на каждую запись:
+//открытая адресация с линейным пробированием, ключи и значения лежат в двух параллельных массивах
+//дополнительно хранится отсортированный массив ключей для постраничной выдачи по возрастанию id
+class IntHashMap<V> extends AbstractMap<Integer, V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    //наибольшее расстояние записи от её ячейки по хэшу, сбрасывается при перестроении таблицы
+    private int maxProbe;
+    //может содержать уже удалённые ключи, они пропускаются при чтении и вычищаются при сжатии
+    private int[] order;
+    private int orderSize;
+
+    IntHashMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    IntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+        order = new int[Math.max(expectedSize, MIN_CAPACITY)];
+    }
+
+    public V get(int key) {
+        int index = indexOf(key);
+        return (index < 0) ? null : valueAt(index);
+    }
+
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    public V put(int key, V value) {
+        Objects.requireNonNull(value);
+        int index = hash(key) & mask;
+        int probe = 0;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                V previous = valueAt(index);
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+            probe++;
+        }
+        keys[index] = key;
+        values[index] = value;
+        maxProbe = Math.max(maxProbe, probe);
+        if (++size * 2 > values.length) {
+            resize(values.length * 2);
+        }
+        addToOrder(key);
+        return null;
+    }
+
+    public V remove(int key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        V previous = valueAt(index);
+        values[index] = null;
+        size--;
+        shiftBack(index);
+        if (orderSize > size * 2 + MIN_CAPACITY) {
+            compactOrder();
+        }
+        return previous;
+    }
+
+    //заранее выделить место под expectedSize записей, чтобы массовая вставка обошлась без перестроений
+    void ensureCapacity(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > values.length) {
+            resize(capacity);
+        }
+        if (order.length < expectedSize) {
+            order = Arrays.copyOf(order, expectedSize);
+        }
+    }
+
+    //значения с ключом больше afterId по возрастанию ключа, не более limit штук
+    public List<V> valuesAfter(int afterId, int limit) {
+        List<V> page = new ArrayList<>(Math.min(limit, size));
+        int position = Arrays.binarySearch(order, 0, orderSize, afterId);
+        position = (position >= 0) ? position + 1 : -position - 1;
+        for (; position < orderSize && page.size() < limit; position++) {
+            V value = get(order[position]);
+            if (value != null) {
+                page.add(value);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public V get(Object key) {
+        return (key instanceof Integer) ? get((int) (Integer) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer && containsKey((int) (Integer) key);
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return put((int) key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return (key instanceof Integer) ? remove((int) (Integer) key) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            allocate(MIN_CAPACITY);
+            size = 0;
+        }
+        order = new int[MIN_CAPACITY];
+        orderSize = 0;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super Integer, ? super V> action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], valueAt(i));
+            }
+        }
+    }
+
+    @Override
+    public Set<Integer> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    Integer element(int index) {
+                        return keys[index];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    V element(int index) {
+                        return valueAt(index);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    Entry<Integer, V> element(int index) {
+                        return new SimpleImmutableEntry<>(keys[index], valueAt(index));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int indexOf(int key) {
+        int index = hash(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    //удаление без "надгробий": сдвигаем назад записи, которые пробировали через освободившуюся ячейку
+    private void shiftBack(int free) {
+        int index = free;
+        //запись, стоящая дальше maxProbe от свободной ячейки, не могла пробировать через неё:
+        //без этой границы удаление из плотного ряда последовательных id просматривало бы весь ряд
+        for (int distance = 1; distance <= maxProbe; distance++) {
+            index = (index + 1) & mask;
+            if (values[index] == null) {
+                return;
+            }
+            int probe = (index - hash(keys[index])) & mask;
+            if (probe >= distance) {
+                keys[free] = keys[index];
+                values[free] = values[index];
+                values[index] = null;
+                free = index;
+                distance = 0;
+            }
+        }
+    }
+
+    //id выдаются по возрастанию, поэтому обычно ключ просто дописывается в конец
+    private void addToOrder(int key) {
+        int position = orderSize;
+        if (orderSize > 0 && key <= order[orderSize - 1]) {
+            position = Arrays.binarySearch(order, 0, orderSize, key);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+        }
+        if (orderSize == order.length) {
+            order = Arrays.copyOf(order, order.length * 2);
+        }
+        System.arraycopy(order, position, order, position + 1, orderSize - position);
+        order[position] = key;
+        orderSize++;
+    }
+
+    private void compactOrder() {
+        int live = 0;
+        for (int i = 0; i < orderSize; i++) {
+            if (containsKey(order[i])) {
+                order[live++] = order[i];
+            }
+        }
+        orderSize = live;
+        if (order.length > MIN_CAPACITY && orderSize * 4 < order.length) {
+            order = Arrays.copyOf(order, Math.max(orderSize * 2, MIN_CAPACITY));
+        }
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int index = hash(oldKeys[i]) & mask;
+                int probe = 0;
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                    probe++;
+                }
+                maxProbe = Math.max(maxProbe, probe);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        maxProbe = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return (V) values[index];
+    }
+
+    //как в HashMap: последовательные id не сталкиваются и обходятся по возрастанию
+    private static int hash(int key) {
+        return key ^ (key >>> 16);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private abstract class SlotIterator<E> implements Iterator<E> {
+        private int next = advance(0);
+
+        abstract E element(int index);
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            E element = element(next);
+            next = advance(next + 1);
+            return element;
+        }
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+    }
+}
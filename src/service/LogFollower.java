@@ -0,0 +1,130 @@
+package service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+//чтение журнала чужого менеджера без записи в его файлы: новые целые строки активного файла и сегментов.
+//файл текущего поколения держится открытым, поэтому после переименования в сегмент он дочитывается
+//до конца. Ведущий удаляет только сегменты до предыдущей контрольной точки, так что последний сегмент
+//всегда на месте: если он есть, а нужного поколения нет, реплика отстала и должна перечитать снимок
+class LogFollower {
+    private final File file;
+    //последнее дочитанное поколение, сейчас читается поколение generation + 1
+    private int generation;
+    private FileChannel channel;
+    private long position;
+    //миграция записей читаемого файла, определяется по его первой строке
+    private UnaryOperator<String> migration;
+
+    LogFollower(File file, int checkpointGeneration) {
+        this.file = file;
+        this.generation = checkpointGeneration;
+    }
+
+    //записи, появившиеся с прошлого вызова, или null, если часть журнала уже удалена
+    List<String> poll() throws IOException {
+        List<String> records = new ArrayList<>();
+        while (true) {
+            if (channel == null) {
+                if (!getSegment(generation + 1).exists() && hasNewerSegments(generation + 1)) {
+                    return null;
+                }
+                channel = open(generation + 1);
+                if (channel == null) {
+                    return records;
+                }
+                position = 0;
+            }
+            //сегмент проверяется до чтения: если он уже есть, открытый файл больше не изменится.
+            //сегмент могли и удалить после следующих контрольных точек, тогда о переименовании говорят более новые
+            boolean rotated = getSegment(generation + 1).exists() || hasNewerSegments(generation + 1);
+            position = readLines(records);
+            if (!rotated) {
+                return records;
+            }
+            channel.close();
+            channel = null;
+            generation++;
+        }
+    }
+
+    void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    //если есть сегменты новее, поколение segmentGeneration уже закрыто; нет его сегмента - он удалён
+    private boolean hasNewerSegments(int segmentGeneration) {
+        String prefix = file.getName() + ".";
+        File[] newer = file.getAbsoluteFile().getParentFile().listFiles((dir, name) -> name.startsWith(prefix)
+                && name.length() > prefix.length() && name.substring(prefix.length()).chars().allMatch(Character::isDigit)
+                && Integer.parseInt(name.substring(prefix.length())) > segmentGeneration);
+        return newer != null && newer.length > 0;
+    }
+
+    //файл поколения: сегмент, если активный файл уже переименован, иначе активный файл.
+    //активный файл принадлежит этому поколению, только если сегмента не появилось и после открытия
+    private FileChannel open(int segmentGeneration) throws IOException {
+        File segment = getSegment(segmentGeneration);
+        try {
+            if (!segment.exists()) {
+                FileChannel active = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                if (!segment.exists()) {
+                    return active;
+                }
+                active.close();
+            }
+            return FileChannel.open(segment.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            //активный файл создаётся при первой записи после контрольной точки
+            return null;
+        }
+    }
+
+    //дописанное с позиции position, только до последнего перевода строки: неполная запись дочитается позже
+    private long readLines(List<String> records) throws IOException {
+        long size = channel.size();
+        if (size <= position) {
+            return position;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (size - position));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        int end = buffer.position();
+        while (end > 0 && buffer.get(end - 1) != '\n') {
+            end--;
+        }
+        if (end == 0) {
+            return position;
+        }
+        String text = new String(buffer.array(), 0, end - 1, StandardCharsets.UTF_8);
+        List<String> lines = Arrays.asList(text.split("\n", -1));
+        if (position == 0) {
+            migration = CsvMigrations.from(WriteAheadLog.version(lines.getFirst()));
+        }
+        for (String line : lines) {
+            if (!WriteAheadLog.isSchemaLine(line)) {
+                records.add(WriteAheadLog.migrate(line, migration));
+            }
+        }
+        return position + end;
+    }
+
+    private File getSegment(int segmentGeneration) {
+        return new File(file.getPath() + "." + segmentGeneration);
+    }
+}
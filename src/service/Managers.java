@@ -11,6 +11,11 @@ public class Managers {
         return new InMemoryTaskManager();
     }
 
+    //реализация для сервера, обрабатывающего запросы в нескольких потоках
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
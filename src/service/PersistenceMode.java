@@ -0,0 +1,17 @@
+package service;
+
+//как FileBackedTaskManager сохраняет изменения
+public enum PersistenceMode {
+    //после каждого изменения файл перезаписывается целиком
+    SNAPSHOT,
+    //файл - снимок на момент загрузки, изменения дописываются в журнал рядом с ним
+    WRITE_AHEAD_LOG,
+    //файл перезаписывается целиком фоновым потоком, одна запись покрывает все изменения за время задержки
+    WRITE_BEHIND,
+    //записи лежат в слотах отображённого в память файла и изменяются на месте
+    MAPPED,
+    //те же слоты, но файл не отображается в память: изменённые страницы отмечаются менеджером
+    //и записываются по своим смещениям при сбросе (после каждой операции, кроме Durability.ASYNC,
+    //где сброс делают flush() и close())
+    PAGED
+}
@@ -0,0 +1,292 @@
+package service;
+
+import exception.ManagerBackupException;
+import exception.ReadOnlyManagerException;
+import model.Epic;
+import model.Operation;
+import model.Subtask;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+//реплика для чтения: загружает снимок ведущего менеджера, работающего в режиме WRITE_AHEAD_LOG,
+//и догоняет его по журналу из общего каталога. В файлы ведущего ничего не пишет, изменения отклоняет.
+//перед чтением журнал дочитывается, если с прошлого раза прошло больше maxLagMillis,
+//поэтому отставание отдаваемых данных от ведущего не больше этого времени.
+//класс final: конструктор сразу догоняет ведущего через restoreSnapshot и replay
+public final class ReplicaTaskManager extends FileBackedTaskManager {
+    private static final String READ_ONLY = "Реплика только для чтения, изменения принимает ведущий сервер.";
+    private static final System.Logger LOGGER = System.getLogger(ReplicaTaskManager.class.getName());
+
+    private final File data;
+    private final long maxLagNanos;
+    private LogFollower follower;
+    private long caughtUpAt;
+    //записи журнала применяются методами менеджера, которые сами могут читать: повторно не догоняем
+    private boolean catchingUp;
+    //прошлое перечитывание снимка не закончилось: состояние неполное, догонять журнал с него нельзя
+    private boolean resyncNeeded;
+
+    public ReplicaTaskManager(File data) {
+        this(data, 100);
+    }
+
+    public ReplicaTaskManager(File data, long maxLagMillis) throws ManagerBackupException {
+        super(data, PersistenceMode.SNAPSHOT);
+        this.data = data;
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+        synchronized (this) {
+            catchingUp = true;
+            try {
+                resync();
+            } finally {
+                catchingUp = false;
+            }
+        }
+    }
+
+    //дочитать журнал сейчас, не дожидаясь истечения maxLagMillis
+    public synchronized void catchUp() throws ManagerBackupException {
+        catchingUp = true;
+        try {
+            List<String> records = resyncNeeded ? null : follower.poll();
+            if (records == null) {
+                resync();
+            } else {
+                replayOrResync(records);
+            }
+        } catch (IOException e) {
+            throw new ManagerBackupException("Program experienced an error trying to follow the log.");
+        } finally {
+            catchingUp = false;
+        }
+        caughtUpAt = System.nanoTime();
+    }
+
+    //запись, которую не удалось применить (например, прочитанная раньше, чем ведущий дописал файл),
+    //оставила бы реплику в неизвестном состоянии: начинаем заново со снимка. После удачного перечитывания
+    //реплика в порядке, ошибка только пишется в лог; исключение - если не удалось и перечитывание
+    private void replayOrResync(List<String> records) throws ManagerBackupException {
+        try {
+            records.forEach(this::replay);
+        } catch (RuntimeException e) {
+            resync();
+            LOGGER.log(System.Logger.Level.WARNING, "Replica failed to replay the log and reloaded the snapshot.", e);
+        }
+    }
+
+    private void catchUpIfStale() throws ManagerBackupException {
+        if (!catchingUp && System.nanoTime() - caughtUpAt >= maxLagNanos) {
+            catchUp();
+        }
+    }
+
+    //начать заново со свежего снимка: реплика отстала дальше, чем хранится журнал
+    private void resync() throws ManagerBackupException {
+        resyncNeeded = true;
+        tasks.clear();
+        epics.clear();
+        subtasks.clear();
+        indexes = new TaskIndexes();
+        prioritizedTasks = new ScheduleIndex();
+        counter = 0;
+        try {
+            if (follower != null) {
+                follower.close();
+            }
+            List<String> records = null;
+            while (records == null) {
+                int generation = data.exists() ? restoreSnapshot(data, null) : 0;
+                follower = new LogFollower(getLogFile(data), generation);
+                records = follower.poll();
+            }
+            records.forEach(this::replay);
+        } catch (IOException e) {
+            throw new ManagerBackupException("Program experienced an error trying to follow the log.");
+        } catch (ManagerBackupException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ManagerBackupException("Program experienced an error trying to replay the log.", e);
+        }
+        resyncNeeded = false;
+        caughtUpAt = System.nanoTime();
+    }
+
+    //просмотры на реплике не пишутся в журнал просмотров ведущего
+    @Override
+    void persistView(Task task) {
+    }
+
+    @Override
+    public synchronized Optional<Task> getTask(int id) {
+        catchUpIfStale();
+        return super.getTask(id);
+    }
+
+    @Override
+    public synchronized Optional<Epic> getEpic(int id) {
+        catchUpIfStale();
+        return super.getEpic(id);
+    }
+
+    @Override
+    public synchronized Optional<Subtask> getSubtask(int id) {
+        catchUpIfStale();
+        return super.getSubtask(id);
+    }
+
+    @Override
+    public synchronized ArrayList<Task> getAllTasks() {
+        catchUpIfStale();
+        return super.getAllTasks();
+    }
+
+    @Override
+    public synchronized ArrayList<Epic> getAllEpics() {
+        catchUpIfStale();
+        return super.getAllEpics();
+    }
+
+    @Override
+    public synchronized ArrayList<Subtask> getAllSubtasks() {
+        catchUpIfStale();
+        return super.getAllSubtasks();
+    }
+
+    @Override
+    public synchronized List<Task> getTasks(int afterId, int limit) {
+        catchUpIfStale();
+        return super.getTasks(afterId, limit);
+    }
+
+    @Override
+    public synchronized List<Epic> getEpics(int afterId, int limit) {
+        catchUpIfStale();
+        return super.getEpics(afterId, limit);
+    }
+
+    @Override
+    public synchronized List<Subtask> getSubtasks(int afterId, int limit) {
+        catchUpIfStale();
+        return super.getSubtasks(afterId, limit);
+    }
+
+    @Override
+    public synchronized ArrayList<Subtask> getEpicSubtasks(int epicId) {
+        catchUpIfStale();
+        return super.getEpicSubtasks(epicId);
+    }
+
+    @Override
+    public synchronized List<Task> getHistory() {
+        return super.getHistory();
+    }
+
+    @Override
+    public synchronized List<Task> getPrioritizedTasks() {
+        catchUpIfStale();
+        return super.getPrioritizedTasks();
+    }
+
+    @Override
+    public synchronized List<Task> getPrioritizedTasks(LocalDateTime afterStart, int afterId, int limit) {
+        catchUpIfStale();
+        return super.getPrioritizedTasks(afterStart, afterId, limit);
+    }
+
+    @Override
+    public synchronized List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        catchUpIfStale();
+        return super.getPrioritizedTasks(from, to);
+    }
+
+    @Override
+    public synchronized Optional<LocalDateTime> findFreeSlot(Duration duration, LocalDateTime notBefore,
+                                                             LocalDateTime notAfter) {
+        catchUpIfStale();
+        return super.findFreeSlot(duration, notBefore, notAfter);
+    }
+
+    @Override
+    public Task createTask(Task task) {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public Epic createEpic(Epic epic) {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public Subtask createSubtask(Subtask subtask) {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public Task updateTask(Task task) {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public Epic updateEpic(Epic epic) {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask) {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public Task deleteTaskPerId(int id) {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public Epic deleteEpicPerId(int id) {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public Subtask deleteSubtaskPerId(int id) {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public List<Task> applyBatch(List<Operation> operations) {
+        throw new ReadOnlyManagerException(READ_ONLY);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            follower.close();
+        } catch (IOException e) {
+            throw new ManagerBackupException("Program experienced an error trying to follow the log.");
+        } finally {
+            super.close();
+        }
+    }
+}
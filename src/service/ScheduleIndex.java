@@ -0,0 +1,329 @@
+package service;
+
+import model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+class ScheduleIndex {
+    //задачи в порядке начала, при равном начале - в порядке id
+    private NavigableMap<Slot, Task> schedule = new TreeMap<>();
+    private final Map<Integer, Slot> slotsById = new HashMap<>();
+    //только интервалы ненулевой длины: они не пересекаются, поэтому концы упорядочены так же, как начала
+    private NavigableMap<LocalDateTime, Slot> busy = new TreeMap<>();
+
+    boolean isFree(LocalDateTime start, LocalDateTime end) {
+        return isFree(start, end, 0);
+    }
+
+    boolean isFree(LocalDateTime start, LocalDateTime end, int ignoredId) {
+        if (!end.isAfter(start)) {
+            return true;
+        }
+        Map.Entry<LocalDateTime, Slot> previous = busy.lowerEntry(end);
+        if (previous != null && previous.getValue().id == ignoredId) {
+            previous = busy.lowerEntry(previous.getKey());
+        }
+        return previous == null || !previous.getValue().end.isAfter(start);
+    }
+
+    //первая задача пакета, пересекающаяся с расписанием или с другой задачей пакета;
+    //прежние интервалы заменяемых задач (replacedIds) при проверке не учитываются
+    Task findOverlapping(List<Task> incoming, Set<Integer> replacedIds) {
+        List<Task> sorted = incoming.stream()
+                .filter(task -> task.getEndTime().isAfter(task.getStartTime()))
+                .sorted(Comparator.comparing(Task::getStartTime))
+                .toList();
+        Task previous = null;
+        for (Task task : sorted) {
+            if (previous != null && previous.getEndTime().isAfter(task.getStartTime())) {
+                return task;
+            }
+            if (!isFree(task.getStartTime(), task.getEndTime(), replacedIds)) {
+                return task;
+            }
+            previous = task;
+        }
+        return null;
+    }
+
+    private boolean isFree(LocalDateTime start, LocalDateTime end, Set<Integer> ignoredIds) {
+        Map.Entry<LocalDateTime, Slot> previous = busy.lowerEntry(end);
+        while (previous != null && ignoredIds.contains(previous.getValue().id)) {
+            previous = busy.lowerEntry(previous.getKey());
+        }
+        return previous == null || !previous.getValue().end.isAfter(start);
+    }
+
+    void add(Task task) {
+        remove(task.getId());
+        Slot slot = new Slot(task.getStartTime(), task.getEndTime(), task.getId());
+        schedule.put(slot, task);
+        slotsById.put(slot.id, slot);
+        if (slot.end.isAfter(slot.start)) {
+            busy.put(slot.start, slot);
+        }
+    }
+
+    //массовая загрузка за линейное время, если задачи уже в порядке расписания.
+    //возвращает задачи, которые пересекаются с предыдущими и в расписание не попали
+    List<Task> addAll(List<Task> tasks) {
+        List<Task> overlapping = new ArrayList<>();
+        if (!schedule.isEmpty()) {
+            for (Task task : tasks) {
+                if (isFree(task.getStartTime(), task.getEndTime(), task.getId())) {
+                    add(task);
+                } else {
+                    overlapping.add(task);
+                }
+            }
+            return overlapping;
+        }
+        if (!build(tasks, overlapping, false)) {
+            List<Task> sorted = new ArrayList<>(tasks);
+            sorted.sort(Comparator.comparing(Task::getStartTime).thenComparingInt(Task::getId));
+            build(sorted, overlapping, true);
+        }
+        return overlapping;
+    }
+
+    //false, если неотсортированные задачи идут не в порядке расписания: тогда ничего не построено
+    private boolean build(List<Task> tasks, List<Task> overlapping, boolean sorted) {
+        List<Slot> slots = new ArrayList<>(tasks.size());
+        List<Task> scheduled = new ArrayList<>(tasks.size());
+        List<LocalDateTime> busyStarts = new ArrayList<>(tasks.size());
+        List<Slot> busySlots = new ArrayList<>(tasks.size());
+        Slot previous = null;
+        LocalDateTime busyUntil = null;
+        for (Task task : tasks) {
+            Slot slot = new Slot(task.getStartTime(), task.getEndTime(), task.getId());
+            boolean ordered = previous == null || previous.compareTo(slot) < 0;
+            previous = slot;
+            if (!ordered && !sorted) {
+                slotsById.clear();
+                overlapping.clear();
+                return false;
+            }
+            //после сортировки не по порядку идёт только повтор того же id
+            if (!ordered || slot.end.isAfter(slot.start) && busyUntil != null && busyUntil.isAfter(slot.start)) {
+                overlapping.add(task);
+                continue;
+            }
+            if (slot.end.isAfter(slot.start)) {
+                busyStarts.add(slot.start);
+                busySlots.add(slot);
+                busyUntil = slot.end;
+            }
+            slots.add(slot);
+            scheduled.add(task);
+            slotsById.put(slot.id, slot);
+        }
+        schedule = new TreeMap<>(new Presorted<>(slots, scheduled));
+        busy = new TreeMap<>(new Presorted<>(busyStarts, busySlots));
+        return true;
+    }
+
+    Task remove(int id) {
+        Slot slot = slotsById.remove(id);
+        if (slot == null) {
+            return null;
+        }
+        Slot busySlot = busy.get(slot.start);
+        if (busySlot != null && busySlot.id == id) {
+            busy.remove(slot.start);
+        }
+        return schedule.remove(slot);
+    }
+
+    boolean contains(int id) {
+        return slotsById.containsKey(id);
+    }
+
+    void clear() {
+        schedule.clear();
+        slotsById.clear();
+        busy.clear();
+    }
+
+    int size() {
+        return schedule.size();
+    }
+
+    List<Task> toList() {
+        return new ArrayList<>(schedule.values());
+    }
+
+    List<Integer> ids() {
+        List<Integer> ids = new ArrayList<>(schedule.size());
+        schedule.keySet().forEach(slot -> ids.add(slot.id));
+        return ids;
+    }
+
+    //следующая страница расписания после позиции (afterStart, afterId), null - с начала;
+    //задача, на которой закончилась прошлая страница, может быть уже удалена
+    List<Task> pageAfter(LocalDateTime afterStart, int afterId, int limit) {
+        Collection<Task> tail = schedule.values();
+        if (afterStart != null) {
+            tail = schedule.tailMap(new Slot(afterStart, afterStart, afterId), false).values();
+        }
+        List<Task> page = new ArrayList<>(Math.min(limit, schedule.size()));
+        Iterator<Task> iterator = tail.iterator();
+        while (iterator.hasNext() && page.size() < limit) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    //задачи, пересекающие полуинтервал [from, to), в порядке начала:
+    //одна задача, начатая раньше from и ещё идущая, плюс срез расписания по началу
+    List<Task> window(LocalDateTime from, LocalDateTime to) {
+        List<Task> result = new ArrayList<>();
+        if (!to.isAfter(from)) {
+            return result;
+        }
+        Map.Entry<LocalDateTime, Slot> running = busy.lowerEntry(from);
+        if (running != null && running.getValue().end.isAfter(from)) {
+            result.add(schedule.get(running.getValue()));
+        }
+        result.addAll(schedule.subMap(new Slot(from, from, Integer.MIN_VALUE), true,
+                new Slot(to, to, Integer.MIN_VALUE), false).values());
+        return result;
+    }
+
+    //начало самого раннего промежутка длиной duration внутри [notBefore, notAfter]:
+    //один проход по занятым интервалам, начиная с того, что идёт в момент notBefore
+    Optional<LocalDateTime> findFreeSlot(Duration duration, LocalDateTime notBefore, LocalDateTime notAfter) {
+        LocalDateTime candidate = notBefore;
+        Map.Entry<LocalDateTime, Slot> running = busy.lowerEntry(candidate);
+        if (running != null && running.getValue().end.isAfter(candidate)) {
+            candidate = running.getValue().end;
+        }
+        for (Slot slot : busy.tailMap(candidate, true).values()) {
+            if (!candidate.plus(duration).isAfter(slot.start) || candidate.plus(duration).isAfter(notAfter)) {
+                break;
+            }
+            candidate = slot.end;
+        }
+        return candidate.plus(duration).isAfter(notAfter) ? Optional.empty() : Optional.of(candidate);
+    }
+
+    //неизменяемая SortedMap над упорядоченными списками ключей и значений, без копирования
+    private static class Presorted<K extends Comparable<? super K>, V> extends AbstractMap<K, V>
+            implements SortedMap<K, V> {
+        private final List<K> keys;
+        private final List<V> values;
+
+        Presorted(List<K> keys, List<V> values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new Iterator<>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < keys.size();
+                        }
+
+                        @Override
+                        public Map.Entry<K, V> next() {
+                            Map.Entry<K, V> entry = new SimpleImmutableEntry<>(keys.get(next), values.get(next));
+                            next++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return keys.size();
+                }
+            };
+        }
+
+        //порядок ключей естественный, как у деревьев расписания
+        @Override
+        public Comparator<? super K> comparator() {
+            return null;
+        }
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            if (fromKey.compareTo(toKey) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            return slice(position(fromKey), position(toKey));
+        }
+
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            return slice(0, position(toKey));
+        }
+
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            return slice(position(fromKey), keys.size());
+        }
+
+        //позиция первого ключа не меньше key
+        private int position(K key) {
+            int index = Collections.binarySearch(keys, key);
+            return (index >= 0) ? index : -index - 1;
+        }
+
+        private SortedMap<K, V> slice(int from, int to) {
+            return new Presorted<>(keys.subList(from, to), values.subList(from, to));
+        }
+
+        @Override
+        public V get(Object key) {
+            @SuppressWarnings("unchecked")
+            int index = Collections.binarySearch(keys, (K) key);
+            return (index >= 0) ? values.get(index) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public K firstKey() {
+            return keys.getFirst();
+        }
+
+        @Override
+        public K lastKey() {
+            return keys.getLast();
+        }
+    }
+
+    private record Slot(LocalDateTime start, LocalDateTime end, int id) implements Comparable<Slot> {
+        @Override
+        public int compareTo(Slot other) {
+            int result = start.compareTo(other.start);
+            return (result != 0) ? result : Integer.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,669 @@
+package service;
+
+import exception.ManagerBackupException;
+import exception.ManagerSaveException;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import model.TaskType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+//хранилище записей в слотах фиксированного размера по id, строки лежат в куче <файл>.heap[.<поколение>].
+//в слоте две копии записи, при загрузке берётся последняя целая
+class SlotTaskStore {
+    static final int MAGIC = 0x544B4D4D;
+    static final int VERSION = 2;
+    //версия 1: заголовок 16 байт и одна копия записи без суммы, поля по тем же смещениям
+    private static final int LEGACY_VERSION = 1;
+    private static final int LEGACY_HEADER = 16;
+    private static final int LEGACY_SLOT = 48;
+    private static final int HEADER = 64;
+    private static final int COPY = 64;
+    private static final int SLOT = 2 * COPY;
+    private static final int COUNTER_OFFSET = 8;
+    private static final int HEAP_GENERATION_OFFSET = 12;
+    private static final int INITIAL_CAPACITY = 1024;
+    static final int PAGE = 4096;
+    //строки при открытии читаются окном такого размера, без отображения всей кучи
+    private static final int HEAP_WINDOW = 1 << 16;
+    //куча сжимается, когда мёртвых строк в ней больше, чем живых, и не меньше этого числа байт
+    static final long COMPACT_MIN_GARBAGE = 1 << 20;
+    //поля копии
+    private static final int TYPE = 0;
+    private static final int STATUS = 1;
+    private static final int EPIC_ID = 4;
+    private static final int START = 8;
+    private static final int DURATION = 16;
+    private static final int NAME_OFFSET = 24;
+    private static final int NAME_LENGTH = 32;
+    private static final int DESCRIPTION_LENGTH = 36;
+    private static final int DESCRIPTION_OFFSET = 40;
+    private static final int SEQUENCE = 48;
+    private static final int NAME_CHECKSUM = 52;
+    private static final int DESCRIPTION_CHECKSUM = 56;
+    private static final int CHECKSUM = 60;
+    //тип 0 - пустой слот, иначе TaskType.ordinal() + 1; отсутствующие значения
+    private static final byte EMPTY = 0;
+    private static final byte NO_STATUS = -1;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int NO_STRING = -1;
+
+    private final File file;
+    private final Durability durability;
+    private final boolean mapped;
+    private FileChannel slotsChannel;
+    private FileChannel heapChannel;
+    private ByteBuffer slots;
+    //страницы буфера слотов, изменённые после последнего сброса; только без отображения в память
+    private final BitSet dirtyPages = new BitSet();
+    private int capacity;
+    private long heapEnd;
+    //занятые слоты, чтобы удаление всех записей одного типа не просматривало пустые
+    private final BitSet occupied = new BitSet();
+    //в каких слотах текущая копия вторая и какие текущие копии изменены после последнего сброса
+    private final BitSet second = new BitSet();
+    private final BitSet unsynced = new BitSet();
+    private final CRC32C crc = new CRC32C();
+    private boolean heapDirty;
+
+    SlotTaskStore(File file, Durability durability, boolean mapped) {
+        this.file = file;
+        this.durability = durability;
+        this.mapped = mapped;
+    }
+
+    static File getHeapFile(File file, int generation) {
+        return new File(file.getPath() + ".heap" + ((generation == 0) ? "" : "." + generation));
+    }
+
+    static boolean isSlotFile(File file) throws IOException {
+        if (file.length() < HEADER) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(magic, 0);
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    boolean isOpen() {
+        return slots != null;
+    }
+
+    //новое пустое хранилище на месте прежних файлов
+    void create() throws ManagerSaveException {
+        try {
+            slotsChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            heapChannel = FileChannel.open(getHeapFile(file, 0).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            map(INITIAL_CAPACITY);
+            writeHeader(slots, 0, 0);
+            markDirty(0, HEADER);
+            heapEnd = 0;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Program experienced an error trying to create the slot store.");
+        }
+    }
+
+    private static void writeHeader(ByteBuffer buffer, int counter, int generation) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(Integer.BYTES, VERSION);
+        buffer.putInt(COUNTER_OFFSET, counter);
+        buffer.putInt(HEAP_GENERATION_OFFSET, generation);
+    }
+
+    //открыть существующие файлы и прочитать все записи по возрастанию id, поэтому эпик идёт раньше своих подзадач.
+    //подзадача, от эпика которой не осталось целой копии, удаляется
+    List<Task> open() throws ManagerBackupException {
+        try {
+            if (readVersion() == LEGACY_VERSION) {
+                upgrade();
+            }
+            slotsChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            map((int) ((slotsChannel.size() - HEADER) / SLOT));
+            if (!mapped) {
+                readFully(slotsChannel, slots, 0);
+            }
+            if (slots.getInt(0) != MAGIC) {
+                throw new ManagerBackupException("Program experienced an error trying to open the slot store.");
+            }
+            int version = slots.getInt(Integer.BYTES);
+            if (version != VERSION) {
+                throw new ManagerBackupException(String.format("Неподдерживаемая версия хранилища: %s.", version));
+            }
+            int generation = slots.getInt(HEAP_GENERATION_OFFSET);
+            heapChannel = FileChannel.open(getHeapFile(file, generation).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (generation > 0) {
+                //сжатие прервано после замены файла слотов: прежняя куча уже не нужна
+                Files.deleteIfExists(getHeapFile(file, generation - 1).toPath());
+            }
+            heapEnd = heapChannel.size();
+            HeapWindow heap = new HeapWindow();
+            List<Task> result = new ArrayList<>();
+            BitSet epics = new BitSet();
+            for (int id = 1; id <= capacity; id++) {
+                int copy = latestCopy(id, heap);
+                if (copy < 0 || slots.get(copy + TYPE) == EMPTY) {
+                    continue;
+                }
+                Task task = decode(slots, copy, id, heap);
+                occupied.set(id);
+                if (task instanceof Subtask && !epics.get(((Subtask) task).getEpicId())) {
+                    remove(id);
+                    continue;
+                }
+                if (task instanceof Epic) {
+                    epics.set(id);
+                }
+                result.add(task);
+            }
+            return result;
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof ManagerBackupException) {
+                throw (ManagerBackupException) e;
+            }
+            throw new ManagerBackupException("Program experienced an error trying to open the slot store.");
+        }
+    }
+
+    private int readVersion() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+            readFully(channel, header, 0);
+            return header.getInt(Integer.BYTES);
+        }
+    }
+
+    //хранилище версии 1 переписывается в текущую с кучей следующего поколения и заменяет прежнее
+    //переименованием, как при сжатии: до замены на диске остаётся прежний файл
+    private void upgrade() throws IOException {
+        ByteBuffer legacy;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            legacy = ByteBuffer.allocate((int) channel.size());
+            readFully(channel, legacy, 0);
+        }
+        int counter = legacy.getInt(COUNTER_OFFSET);
+        int generation = legacy.getInt(HEAP_GENERATION_OFFSET);
+        File legacyHeap = getHeapFile(file, generation);
+        List<Task> records = new ArrayList<>();
+        BitSet epics = new BitSet();
+        try (FileChannel channel = FileChannel.open(legacyHeap.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            heapChannel = channel;
+            heapEnd = channel.size();
+            HeapWindow heap = new HeapWindow();
+            for (int id = 1, slot = LEGACY_HEADER; slot + LEGACY_SLOT <= legacy.capacity();
+                 id++, slot += LEGACY_SLOT) {
+                if (legacy.get(slot + TYPE) == EMPTY || !isDecodable(legacy, slot)) {
+                    continue;
+                }
+                Task task = decode(legacy, slot, id, heap);
+                if (task instanceof Subtask && !epics.get(((Subtask) task).getEpicId())) {
+                    continue;
+                }
+                if (task instanceof Epic) {
+                    epics.set(id);
+                }
+                records.add(task);
+            }
+        }
+        capacity = Math.max(INITIAL_CAPACITY, (legacy.capacity() - LEGACY_HEADER) / LEGACY_SLOT);
+        slots = ByteBuffer.allocate(HEADER + capacity * SLOT);
+        writeHeader(slots, counter, generation + 1);
+        try (FileChannel channel = FileChannel.open(getHeapFile(file, generation + 1).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            heapChannel = channel;
+            heapEnd = 0;
+            for (Task task : records) {
+                put(task, counter);
+            }
+            channel.force(true);
+        }
+        writeAndReplace(slots);
+        Files.deleteIfExists(legacyHeap.toPath());
+        slots = null;
+        heapChannel = null;
+        heapDirty = false;
+        dirtyPages.clear();
+        occupied.clear();
+        second.clear();
+        unsynced.clear();
+    }
+
+    private void writeAndReplace(ByteBuffer content) throws IOException {
+        File temp = new File(file.getPath() + ".compact");
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer source = content.duplicate().clear();
+            while (source.hasRemaining()) {
+                channel.write(source, source.position());
+            }
+        }
+        FileBackedTaskManager.replaceDurably(temp, file);
+    }
+
+    int getCounter() {
+        return slots.getInt(COUNTER_OFFSET);
+    }
+
+    //записать задачу в её слот. Строки дописываются в кучу, только если изменились
+    void put(Task task, int counter) throws ManagerSaveException {
+        int id = task.getId();
+        try {
+            ensureCapacity(id);
+            int previous = currentCopy(id);
+            boolean wasOccupied = occupied.get(id);
+            int copy = nextCopy(id);
+            writeString(previous, copy, NAME_OFFSET, task.getName(), wasOccupied);
+            writeString(previous, copy, DESCRIPTION_OFFSET, task.getDescription(), wasOccupied);
+            TaskType type = (task instanceof Epic) ? TaskType.EPIC
+                    : (task instanceof Subtask) ? TaskType.SUBTASK : TaskType.TASK;
+            slots.put(copy + TYPE, (byte) (type.ordinal() + 1));
+            slots.put(copy + STATUS, (task.getStatus() == null) ? NO_STATUS : (byte) task.getStatus().ordinal());
+            slots.putInt(copy + EPIC_ID, (type == TaskType.SUBTASK) ? ((Subtask) task).getEpicId() : 0);
+            //время эпика считается по подзадачам и не хранится
+            boolean timed = type != TaskType.EPIC;
+            slots.putLong(copy + START, (timed && task.getStartTime() != null)
+                    ? task.getStartTime().toEpochSecond(ZoneOffset.UTC) : NO_TIME);
+            slots.putLong(copy + DURATION, (timed && task.getDuration() != null)
+                    ? task.getDuration().toMinutes() : NO_TIME);
+            seal(copy);
+            slots.putInt(COUNTER_OFFSET, counter);
+            markDirty(COUNTER_OFFSET, Integer.BYTES);
+            occupied.set(id);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Program experienced an error trying to write to the slot store.");
+        }
+    }
+
+    void remove(int id) {
+        if (occupied.get(id)) {
+            int copy = nextCopy(id);
+            slots.put(copy + TYPE, EMPTY);
+            seal(copy);
+            occupied.clear(id);
+        }
+    }
+
+    void removeAll(TaskType type) {
+        byte stored = (byte) (type.ordinal() + 1);
+        for (int id = occupied.nextSetBit(0); id >= 0; id = occupied.nextSetBit(id + 1)) {
+            if (slots.get(currentCopy(id) + TYPE) == stored) {
+                remove(id);
+            }
+        }
+    }
+
+    void removeSubtasksOf(int epicId) {
+        byte stored = (byte) (TaskType.SUBTASK.ordinal() + 1);
+        for (int id = occupied.nextSetBit(0); id >= 0; id = occupied.nextSetBit(id + 1)) {
+            int copy = currentCopy(id);
+            if (slots.get(copy + TYPE) == stored && slots.getInt(copy + EPIC_ID) == epicId) {
+                remove(id);
+            }
+        }
+    }
+
+    //копия для новой версии записи: сброшенная на диск версия не перезаписывается
+    private int nextCopy(int id) {
+        int current = currentCopy(id);
+        if (unsynced.get(id)) {
+            return current;
+        }
+        int sequence = slots.getInt(current + SEQUENCE);
+        second.flip(id);
+        unsynced.set(id);
+        int next = currentCopy(id);
+        slots.putInt(next + SEQUENCE, sequence + 1);
+        return next;
+    }
+
+    //последняя целая копия слота или -1, если целой нет: запись не дошла до диска
+    private int latestCopy(int id, HeapWindow heap) throws IOException {
+        int first = copyOffset(id, false);
+        int other = copyOffset(id, true);
+        boolean otherNewer = slots.getInt(other + SEQUENCE) - slots.getInt(first + SEQUENCE) > 0;
+        for (int copy : otherNewer ? new int[]{other, first} : new int[]{first, other}) {
+            if (isIntact(copy, heap)) {
+                second.set(id, copy == other);
+                return copy;
+            }
+        }
+        return -1;
+    }
+
+    private void seal(int copy) {
+        slots.putInt(copy + CHECKSUM, checksum(slots, copy));
+        markDirty(copy, COPY);
+    }
+
+    private int checksum(ByteBuffer buffer, int copy) {
+        crc.reset();
+        crc.update(buffer.duplicate().clear().limit(copy + CHECKSUM).position(copy));
+        return (int) crc.getValue();
+    }
+
+    //сбросить изменения на диск: сначала кучу, потом слоты, чтобы слот не ссылался на потерянные строки.
+    //при Durability.ASYNC вызывается только из flush() и при закрытии
+    void sync() throws ManagerSaveException {
+        if (slots == null) {
+            return;
+        }
+        try {
+            if (heapDirty) {
+                heapChannel.force(false);
+                heapDirty = false;
+            }
+            if (mapped) {
+                ((MappedByteBuffer) slots).force();
+            } else if (!dirtyPages.isEmpty()) {
+                writeDirtyPages();
+                slotsChannel.force(false);
+            }
+            unsynced.clear();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Program experienced an error trying to flush the slot store.");
+        }
+    }
+
+    //страницы пишутся по своим смещениям, соседние изменённые страницы - одним вызовом
+    private void writeDirtyPages() throws IOException {
+        int limit = slots.capacity();
+        for (int page = dirtyPages.nextSetBit(0); page >= 0; page = dirtyPages.nextSetBit(page)) {
+            int end = dirtyPages.nextClearBit(page);
+            int from = page * PAGE;
+            ByteBuffer run = slots.duplicate().limit(Math.min(limit, end * PAGE)).position(from);
+            while (run.hasRemaining()) {
+                slotsChannel.write(run, run.position());
+            }
+            page = end;
+        }
+        dirtyPages.clear();
+    }
+
+    private void markDirty(int offset, int length) {
+        if (!mapped) {
+            dirtyPages.set(offset / PAGE, (offset + length - 1) / PAGE + 1);
+        }
+    }
+
+    //изменённых, но ещё не записанных страниц; для отображённого файла их учитывает система
+    int getDirtyPages() {
+        return dirtyPages.cardinality();
+    }
+
+    //после операции: при SYNC и GROUP изменения сразу уходят на диск
+    void commit() throws ManagerSaveException {
+        if (durability != Durability.ASYNC) {
+            sync();
+        }
+    }
+
+    void close() throws ManagerSaveException {
+        sync();
+        try {
+            File staleHeap = (slots != null && isWorthCompacting()) ? compact() : null;
+            if (slotsChannel != null) {
+                slotsChannel.close();
+            }
+            if (heapChannel != null) {
+                heapChannel.close();
+            }
+            if (staleHeap != null) {
+                Files.deleteIfExists(staleHeap.toPath());
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Program experienced an error trying to close the slot store.");
+        }
+        slots = null;
+    }
+
+    private boolean isWorthCompacting() {
+        long live = 0;
+        for (int id = occupied.nextSetBit(0); id >= 0; id = occupied.nextSetBit(id + 1)) {
+            int copy = currentCopy(id);
+            live += Math.max(0, slots.getInt(copy + NAME_LENGTH))
+                    + Math.max(0, slots.getInt(copy + DESCRIPTION_LENGTH));
+        }
+        long garbage = heapEnd - live;
+        return garbage >= COMPACT_MIN_GARBAGE && garbage > live;
+    }
+
+    //живые строки переписываются в кучу следующего поколения, файл слотов заменяется атомарно.
+    //возвращает прежнюю кучу: её удаляют после закрытия каналов
+    private File compact() throws IOException {
+        int generation = slots.getInt(HEAP_GENERATION_OFFSET);
+        ByteBuffer compacted = ByteBuffer.allocate(slots.capacity());
+        compacted.put(0, slots, 0, HEADER);
+        compacted.putInt(HEAP_GENERATION_OFFSET, generation + 1);
+        try (FileChannel heap = FileChannel.open(getHeapFile(file, generation + 1).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long end = 0;
+            for (int id = occupied.nextSetBit(0); id >= 0; id = occupied.nextSetBit(id + 1)) {
+                int copy = copyOffset(id, false);
+                compacted.put(copy, slots, currentCopy(id), COPY);
+                end = copyString(heap, end, compacted, copy + NAME_OFFSET, copy + NAME_LENGTH);
+                end = copyString(heap, end, compacted, copy + DESCRIPTION_OFFSET, copy + DESCRIPTION_LENGTH);
+                compacted.putInt(copy + CHECKSUM, checksum(compacted, copy));
+            }
+            heap.force(true);
+        }
+        writeAndReplace(compacted);
+        return getHeapFile(file, generation);
+    }
+
+    private long copyString(FileChannel heap, long end, ByteBuffer compacted, int offsetField, int lengthField)
+            throws IOException {
+        int length = compacted.getInt(lengthField);
+        if (length == NO_STRING) {
+            return end;
+        }
+        ByteBuffer content = ByteBuffer.wrap(readHeap(compacted.getLong(offsetField), length));
+        while (content.hasRemaining()) {
+            heap.write(content, end + content.position());
+        }
+        compacted.putLong(offsetField, end);
+        return end + length;
+    }
+
+    private int copyOffset(int id, boolean second) {
+        return HEADER + (id - 1) * SLOT + (second ? COPY : 0);
+    }
+
+    private int currentCopy(int id) {
+        return copyOffset(id, second.get(id));
+    }
+
+    //без отображения буфер растёт копированием; файл дорастает, когда в новые страницы что-то записано
+    private void map(int slotCount) throws IOException {
+        int size = HEADER + slotCount * SLOT;
+        if (mapped) {
+            slots = slotsChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } else {
+            ByteBuffer grown = ByteBuffer.allocate(size);
+            if (slots != null) {
+                grown.put(0, slots, 0, slots.capacity());
+            }
+            slots = grown;
+        }
+        capacity = slotCount;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        ByteBuffer target = buffer.duplicate().clear();
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    //файл растёт удвоением; отображение пересоздаётся, прежнее освобождается сборщиком мусора
+    private void ensureCapacity(int id) throws IOException {
+        if (id <= capacity) {
+            return;
+        }
+        long slotCount = Math.max(id, (long) capacity * 2);
+        if (HEADER + slotCount * SLOT > Integer.MAX_VALUE) {
+            slotCount = (Integer.MAX_VALUE - HEADER) / SLOT;
+            if (id > slotCount) {
+                throw new IOException("Mapped store is full.");
+            }
+        }
+        map((int) slotCount);
+    }
+
+    //строка, не изменившаяся с прежней копии, не дописывается: новая копия ссылается на те же байты
+    private void writeString(int previous, int copy, int offsetField, String value, boolean wasOccupied)
+            throws IOException {
+        int lengthField = (offsetField == NAME_OFFSET) ? NAME_LENGTH : DESCRIPTION_LENGTH;
+        int checksumField = (offsetField == NAME_OFFSET) ? NAME_CHECKSUM : DESCRIPTION_CHECKSUM;
+        if (value == null) {
+            slots.putInt(copy + lengthField, NO_STRING);
+            slots.putInt(copy + checksumField, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long offset = slots.getLong(previous + offsetField);
+        if (wasOccupied && slots.getInt(previous + lengthField) == bytes.length
+                && Arrays.equals(readHeap(offset, bytes.length), bytes)) {
+            slots.putLong(copy + offsetField, offset);
+            slots.putInt(copy + lengthField, bytes.length);
+            slots.putInt(copy + checksumField, slots.getInt(previous + checksumField));
+            return;
+        }
+        crc.reset();
+        crc.update(bytes);
+        slots.putInt(copy + checksumField, (int) crc.getValue());
+        ByteBuffer content = ByteBuffer.wrap(bytes);
+        long position = heapEnd;
+        while (content.hasRemaining()) {
+            heapChannel.write(content, position + content.position());
+        }
+        heapEnd += bytes.length;
+        heapDirty = true;
+        slots.putLong(copy + offsetField, position);
+        slots.putInt(copy + lengthField, bytes.length);
+    }
+
+    private byte[] readHeap(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (heapChannel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.array();
+    }
+
+    //копия целая: сумма сошлась, а у занятой копии поля в допустимых пределах и строки дошли до кучи целыми
+    private boolean isIntact(int copy, HeapWindow heap) throws IOException {
+        if (slots.getInt(copy + CHECKSUM) != checksum(slots, copy)) {
+            return false;
+        }
+        return slots.get(copy + TYPE) == EMPTY || isDecodable(slots, copy)
+                && heap.matches(slots.getLong(copy + NAME_OFFSET), slots.getInt(copy + NAME_LENGTH),
+                slots.getInt(copy + NAME_CHECKSUM))
+                && heap.matches(slots.getLong(copy + DESCRIPTION_OFFSET), slots.getInt(copy + DESCRIPTION_LENGTH),
+                slots.getInt(copy + DESCRIPTION_CHECKSUM));
+    }
+
+    private boolean isDecodable(ByteBuffer buffer, int copy) {
+        int typeIndex = buffer.get(copy + TYPE) - 1;
+        byte statusIndex = buffer.get(copy + STATUS);
+        return typeIndex >= 0 && typeIndex < TaskType.values().length
+                && statusIndex >= NO_STATUS && statusIndex < TaskStatus.values().length
+                && isInHeap(buffer.getLong(copy + NAME_OFFSET), buffer.getInt(copy + NAME_LENGTH))
+                && isInHeap(buffer.getLong(copy + DESCRIPTION_OFFSET), buffer.getInt(copy + DESCRIPTION_LENGTH));
+    }
+
+    private boolean isInHeap(long offset, int length) {
+        return length == NO_STRING || (length >= 0 && offset >= 0 && offset + length <= heapEnd);
+    }
+
+    private Task decode(ByteBuffer buffer, int copy, int id, HeapWindow heap) throws IOException {
+        TaskType type = TaskType.values()[buffer.get(copy + TYPE) - 1];
+        byte statusIndex = buffer.get(copy + STATUS);
+        TaskStatus status = (statusIndex == NO_STATUS) ? null : TaskStatus.values()[statusIndex];
+        String name = heap.read(buffer.getLong(copy + NAME_OFFSET), buffer.getInt(copy + NAME_LENGTH));
+        String description = heap.read(buffer.getLong(copy + DESCRIPTION_OFFSET),
+                buffer.getInt(copy + DESCRIPTION_LENGTH));
+        Task task;
+        if (type == TaskType.EPIC) {
+            Epic epic = new Epic(name, description);
+            epic.setStatus(status);
+            task = epic;
+        } else {
+            long start = buffer.getLong(copy + START);
+            long minutes = buffer.getLong(copy + DURATION);
+            LocalDateTime startTime = (start == NO_TIME) ? null
+                    : LocalDateTime.ofEpochSecond(start, 0, ZoneOffset.UTC);
+            Duration duration = (minutes == NO_TIME) ? null : Duration.ofMinutes(minutes);
+            if (type == TaskType.SUBTASK) {
+                task = new Subtask(name, description, status, buffer.getInt(copy + EPIC_ID), startTime, duration);
+            } else {
+                task = new Task(name, description, status, startTime, duration);
+            }
+        }
+        task.setId(id);
+        return task;
+    }
+
+    //строки лежат в куче почти по порядку id, поэтому при открытии куча читается окном
+    private final class HeapWindow {
+        private ByteBuffer buffer = ByteBuffer.allocate(HEAP_WINDOW);
+        private final CRC32C crc = new CRC32C();
+        private long start;
+        private int length;
+
+        String read(long offset, int size) throws IOException {
+            if (size == NO_STRING) {
+                return null;
+            }
+            return new String(buffer.array(), load(offset, size), size, StandardCharsets.UTF_8);
+        }
+
+        boolean matches(long offset, int size, int checksum) throws IOException {
+            if (size == NO_STRING) {
+                return true;
+            }
+            crc.reset();
+            crc.update(buffer.array(), load(offset, size), size);
+            return (int) crc.getValue() == checksum;
+        }
+
+        //позиция строки в окне; окно перечитывается, если строка в него не попадает
+        private int load(long offset, int size) throws IOException {
+            if (offset < start || offset + size > start + length) {
+                if (size > buffer.capacity()) {
+                    buffer = ByteBuffer.allocate(size);
+                }
+                readFully(heapChannel, buffer, offset);
+                start = offset;
+                length = (int) Math.min(buffer.capacity(), heapEnd - offset);
+            }
+            return (int) (offset - start);
+        }
+    }
+}
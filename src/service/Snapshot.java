@@ -0,0 +1,37 @@
+package service;
+
+import model.Epic;
+import model.Task;
+import model.TaskStatus;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+//прочитанный снимок: записи в порядке файла, поколение журнала, вошедшее в снимок, и счётчик id.
+//schedule - id задач в порядке расписания, rollups - накопленные значения эпиков; в снимках,
+//записанных до их появления, оба null
+record Snapshot(List<Task> tasks, int generation, int counter, List<Integer> schedule, List<EpicRollup> rollups) {
+    Snapshot(List<Task> tasks, int generation, int counter) {
+        this(tasks, generation, counter, null, null);
+    }
+
+    //значения эпика на момент записи, после загрузки сверяются с пересчитанными по подзадачам.
+    //время с точностью до секунды, длительность - до минуты, как в записях снимка
+    record EpicRollup(int epicId, int subtaskCount, TaskStatus status, LocalDateTime startTime,
+                      LocalDateTime endTime, long minutes) {
+        static EpicRollup of(Epic epic) {
+            return new EpicRollup(epic.getId(), epic.getSubtasksIds().size(), epic.getStatus(),
+                    truncate(epic.getStartTime()), truncate(epic.getEndTime()),
+                    (epic.getDuration() == null) ? 0 : epic.getDuration().toMinutes());
+        }
+
+        boolean matches(Epic epic) {
+            return equals(of(epic));
+        }
+
+        private static LocalDateTime truncate(LocalDateTime time) {
+            return (time == null) ? null : time.truncatedTo(ChronoUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+//неизменяемый список, опубликованный вместе с номером версии коллекции:
+//писатели только увеличивают версию, читатели получают готовый список без копирования и блокировок,
+//а новый список строится один раз при первом чтении после изменений
+class SnapshotCache<T> {
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot<T> snapshot = new Snapshot<>(-1, List.of());
+
+    //вызывать после того, как изменение уже внесено в коллекцию
+    void invalidate() {
+        version.incrementAndGet();
+    }
+
+    long version() {
+        return version.get();
+    }
+
+    List<T> get(Supplier<List<T>> builder) {
+        Snapshot<T> current = snapshot;
+        long currentVersion = version.get();
+        if (current.version == currentVersion) {
+            return current.items;
+        }
+        List<T> items = Collections.unmodifiableList(builder.get());
+        snapshot = new Snapshot<>(currentVersion, items);
+        return items;
+    }
+
+    private record Snapshot<T>(long version, List<T> items) {
+    }
+}
@@ -0,0 +1,7 @@
+package service;
+
+//формат файла снимка FileBackedTaskManager; при загрузке формат определяется по содержимому файла
+public enum SnapshotFormat {
+    CSV,
+    BINARY
+}
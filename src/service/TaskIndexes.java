@@ -0,0 +1,93 @@
+package service;
+
+import model.Epic;
+import model.Task;
+import model.TaskStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+//вторичные индексы менеджера: по статусу (задачи, эпики и подзадачи)
+//и по дню начала (задачи и подзадачи, у эпика время начала вычисляется по подзадачам)
+class TaskIndexes {
+    private final Map<TaskStatus, IntHashMap<Task>> byStatus = new EnumMap<>(TaskStatus.class);
+    private final NavigableMap<LocalDate, IntHashMap<Task>> byStartDay = new TreeMap<>();
+
+    TaskIndexes() {
+        for (TaskStatus status : TaskStatus.values()) {
+            byStatus.put(status, new IntHashMap<>());
+        }
+    }
+
+    void add(Task task) {
+        if (task.getStatus() != null) {
+            byStatus.get(task.getStatus()).put(task.getId(), task);
+        }
+        if (!(task instanceof Epic) && task.getStartTime() != null) {
+            byStartDay.computeIfAbsent(task.getStartTime().toLocalDate(), day -> new IntHashMap<>())
+                    .put(task.getId(), task);
+        }
+    }
+
+    void remove(Task task) {
+        if (task.getStatus() != null) {
+            byStatus.get(task.getStatus()).remove(task.getId());
+        }
+        if (!(task instanceof Epic) && task.getStartTime() != null) {
+            LocalDate day = task.getStartTime().toLocalDate();
+            IntHashMap<Task> bucket = byStartDay.get(day);
+            if (bucket != null) {
+                bucket.remove(task.getId());
+                if (bucket.isEmpty()) {
+                    byStartDay.remove(day);
+                }
+            }
+        }
+    }
+
+    //статус эпика меняется на месте, поэтому прежнее значение передаётся явно
+    void updateStatus(Epic epic, TaskStatus oldStatus) {
+        if (oldStatus == epic.getStatus()) {
+            return;
+        }
+        if (oldStatus != null) {
+            byStatus.get(oldStatus).remove(epic.getId());
+        }
+        if (epic.getStatus() != null) {
+            byStatus.get(epic.getStatus()).put(epic.getId(), epic);
+        }
+    }
+
+    void clear() {
+        byStatus.values().forEach(IntHashMap::clear);
+        byStartDay.clear();
+    }
+
+    List<Task> findByStatus(TaskStatus status) {
+        return byStatus.get(status).valuesAfter(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    //задачи с началом в полуинтервале [from, to) в порядке начала
+    List<Task> findByStartRange(LocalDateTime from, LocalDateTime to) {
+        List<Task> result = new ArrayList<>();
+        if (!to.isAfter(from)) {
+            return result;
+        }
+        for (IntHashMap<Task> bucket : byStartDay.subMap(from.toLocalDate(), true, to.toLocalDate(), true).values()) {
+            for (Task task : bucket.values()) {
+                if (!task.getStartTime().isBefore(from) && task.getStartTime().isBefore(to)) {
+                    result.add(task);
+                }
+            }
+        }
+        result.sort(Comparator.comparing(Task::getStartTime).thenComparing(Task::getId));
+        return result;
+    }
+}
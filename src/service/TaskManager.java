@@ -1,9 +1,12 @@
 package service;
 
 import model.Epic;
+import model.Operation;
 import model.Subtask;
 import model.Task;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,6 +29,13 @@ public interface TaskManager {
 
     List<Subtask> getAllSubtasks();
 
+    //постраничная выдача по возрастанию id: элементы с id больше afterId, не более limit штук
+    List<Task> getTasks(int afterId, int limit);
+
+    List<Epic> getEpics(int afterId, int limit);
+
+    List<Subtask> getSubtasks(int afterId, int limit);
+
     List<Subtask> getEpicSubtasks(int epicId);
 
     void deleteAllTasks();
@@ -46,7 +56,22 @@ public interface TaskManager {
 
     Subtask deleteSubtaskPerId(int id);
 
+    //применить пакет создания и обновления целиком: все операции проверяются до первого изменения,
+    //при ошибке не применяется ни одна. Возвращает задачи пакета с присвоенными id
+    List<Task> applyBatch(List<Operation> operations);
+
     List<Task> getHistory();
 
     List<Task> getPrioritizedTasks();
+
+    //страница расписания, идущая после позиции (afterStart, afterId) - начала и id последней задачи
+    //предыдущей страницы; afterStart == null - с начала
+    List<Task> getPrioritizedTasks(LocalDateTime afterStart, int afterId, int limit);
+
+    //задачи расписания, пересекающие полуинтервал [from, to)
+    List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to);
+
+    //самое раннее время начала, с которого задача длительностью duration
+    //поместится в расписание и закончится не позже notAfter
+    Optional<LocalDateTime> findFreeSlot(Duration duration, LocalDateTime notBefore, LocalDateTime notAfter);
 }
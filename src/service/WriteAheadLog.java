@@ -0,0 +1,359 @@
+package service;
+
+import exception.ManagerBackupException;
+import exception.ManagerSaveException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+
+//журнал операций, одна строка на операцию; при контрольной точке файл становится сегментом <журнал>.<поколение>.
+//первая строка файла - версия схемы записей
+class WriteAheadLog {
+    private static final String SCHEMA = "schema=";
+    private final File file;
+    private final Durability durability;
+    private int generation;
+    private int records;
+    private long bytes;
+    //файл открыт всё время работы, чтобы не открывать его заново на каждую запись
+    private FileChannel channel;
+    //сквозные счётчики дописанного и сброшенного fsync, при ротации не обнуляются
+    private long appendedOffset;
+    private long syncedOffset;
+    private long appendedRecords;
+    private long syncedRecords;
+    //групповой сброс: один поток выполняет force, остальные ждут его результата
+    private boolean forcing;
+    //ведущий ждёт до groupMaxDelayMillis мс, пока в группе не наберётся groupMaxRecords записей
+    private int groupMaxRecords = 64;
+    private long groupMaxDelayMillis;
+
+    WriteAheadLog(File file) {
+        this(file, Durability.ASYNC);
+    }
+
+    WriteAheadLog(File file, Durability durability) {
+        this.file = file;
+        this.durability = durability;
+    }
+
+    synchronized void setGroupCommit(int maxRecords, long maxDelayMillis) {
+        groupMaxRecords = maxRecords;
+        groupMaxDelayMillis = maxDelayMillis;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    //записей и байт в активном файле с последней контрольной точки
+    int getRecords() {
+        return records;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    //возвращает сквозную позицию конца дописанных записей, её можно передать в awaitDurable
+    synchronized long append(List<String> records) throws ManagerSaveException {
+        if (records.isEmpty()) {
+            return appendedOffset;
+        }
+        StringBuilder text = new StringBuilder();
+        records.forEach(record -> text.append(record).append('\n'));
+        ByteBuffer content = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        int length = content.remaining();
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+                if (channel.size() == 0) {
+                    content = ByteBuffer.wrap((SCHEMA + CsvMigrations.CURRENT + '\n' + text)
+                            .getBytes(StandardCharsets.UTF_8));
+                    length = content.remaining();
+                }
+            }
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            appendedOffset += length;
+            appendedRecords += records.size();
+            if (durability == Durability.SYNC) {
+                sync();
+            } else if (durability == Durability.GROUP) {
+                //ведущий, ждущий группу, проверяет, не набралась ли она
+                notifyAll();
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Program experienced an error trying to append to the log.");
+        }
+        this.records += records.size();
+        bytes += length;
+        return appendedOffset;
+    }
+
+    synchronized long getAppendedOffset() {
+        return appendedOffset;
+    }
+
+    //всё дописанное уходит на диск одним вызовом force
+    synchronized void sync() throws IOException {
+        awaitForcing();
+        if (channel != null && syncedOffset < appendedOffset) {
+            channel.force(false);
+        }
+        markSynced(appendedOffset, appendedRecords);
+    }
+
+    //вернуться, когда записи до позиции offset сброшены на диск; ведущий вызывает force вне монитора,
+    //чтобы другие потоки успели дописать записи в следующую группу
+    void awaitDurable(long offset) throws ManagerSaveException {
+        while (true) {
+            long targetOffset;
+            long targetRecords;
+            FileChannel current;
+            synchronized (this) {
+                //поток, чьи записи уже покрыты, не ждёт сброса, который начал следующий ведущий
+                while (forcing && syncedOffset < offset) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw interrupted();
+                    }
+                }
+                if (syncedOffset >= offset) {
+                    return;
+                }
+                forcing = true;
+                long deadline = System.currentTimeMillis() + groupMaxDelayMillis;
+                long remaining = groupMaxDelayMillis;
+                while (remaining > 0 && appendedRecords - syncedRecords < groupMaxRecords) {
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        forcing = false;
+                        notifyAll();
+                        Thread.currentThread().interrupt();
+                        throw interrupted();
+                    }
+                    remaining = deadline - System.currentTimeMillis();
+                }
+                targetOffset = appendedOffset;
+                targetRecords = appendedRecords;
+                current = channel;
+            }
+            boolean forced = false;
+            try {
+                if (current != null) {
+                    current.force(false);
+                }
+                forced = true;
+            } catch (IOException e) {
+                throw new ManagerSaveException("Program experienced an error trying to flush the log.");
+            } finally {
+                synchronized (this) {
+                    forcing = false;
+                    if (forced) {
+                        markSynced(targetOffset, targetRecords);
+                    }
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    //канал нельзя закрыть или сменить, пока ведущий группы выполняет на нём force
+    private void awaitForcing() throws InterruptedIOException {
+        while (forcing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    private static ManagerSaveException interrupted() {
+        return new ManagerSaveException("Program was interrupted waiting for the log to be flushed.");
+    }
+
+    private void markSynced(long offset, long appended) {
+        syncedOffset = Math.max(syncedOffset, offset);
+        syncedRecords = Math.max(syncedRecords, appended);
+    }
+
+    synchronized void close() throws ManagerSaveException {
+        try {
+            closeChannel();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Program experienced an error trying to close the log.");
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            sync();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    //закрыть активный файл как сегмент следующего поколения, дальше запись идёт в новый файл
+    synchronized int rotate() throws ManagerSaveException {
+        generation++;
+        try {
+            closeChannel();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Program experienced an error trying to rotate the log.");
+        }
+        if (file.exists()) {
+            try {
+                Files.move(file.toPath(), getSegment(generation).toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new ManagerSaveException("Program experienced an error trying to rotate the log.");
+            }
+        }
+        records = 0;
+        bytes = 0;
+        return generation;
+    }
+
+    void deleteSegmentsUpTo(int checkpointGeneration) throws IOException {
+        for (Map.Entry<Integer, File> segment : findSegments().headMap(checkpointGeneration, true).entrySet()) {
+            Files.deleteIfExists(segment.getValue().toPath());
+        }
+    }
+
+    //записи, не вошедшие в снимок поколения checkpointGeneration: более новые сегменты и активный файл.
+    //последняя строка без перевода строки - запись, оборванная при сбое, она отрезается
+    List<String> readRecords(int checkpointGeneration) throws ManagerBackupException {
+        try {
+            generation = checkpointGeneration;
+            deleteSegmentsUpTo(checkpointGeneration);
+            List<String> result = new ArrayList<>();
+            for (Map.Entry<Integer, File> segment : findSegments().entrySet()) {
+                result.addAll(migrate(readLines(segment.getValue())));
+                generation = segment.getKey();
+            }
+            if (file.exists()) {
+                List<String> lines = readLines(file);
+                boolean current = !lines.isEmpty() && version(lines.getFirst()) == CsvMigrations.CURRENT;
+                List<String> active = migrate(lines);
+                bytes = truncateTornTail(file);
+                records = active.size();
+                result.addAll(active);
+                //новые записи не дописываются к файлу старой версии: он закрывается сегментом
+                if (!current && !active.isEmpty()) {
+                    rotate();
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            throw new ManagerBackupException("Program experienced an error trying to read the log.");
+        }
+    }
+
+    //версия схемы файла журнала по его первой строке; у файлов, записанных до версий, строки версии нет
+    static int version(String firstLine) throws ManagerBackupException {
+        if (!firstLine.startsWith(SCHEMA)) {
+            return CsvMigrations.LEGACY;
+        }
+        try {
+            return Integer.parseInt(firstLine.substring(SCHEMA.length()));
+        } catch (NumberFormatException e) {
+            throw new ManagerBackupException("Program experienced an error trying to read the log schema version.");
+        }
+    }
+
+    static boolean isSchemaLine(String line) {
+        return line.startsWith(SCHEMA);
+    }
+
+    //записи файла в текущей версии схемы без строки версии; миграция снимка применяется после операции
+    static List<String> migrate(List<String> lines) throws ManagerBackupException {
+        if (lines.isEmpty()) {
+            return lines;
+        }
+        UnaryOperator<String> migration = CsvMigrations.from(version(lines.getFirst()));
+        List<String> result = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            if (!isSchemaLine(line)) {
+                result.add(migrate(line, migration));
+            }
+        }
+        return result;
+    }
+
+    static String migrate(String record, UnaryOperator<String> migration) {
+        int comma = record.indexOf(',');
+        if (migration == null || comma < 0) {
+            return record;
+        }
+        return record.substring(0, comma + 1) + migration.apply(record.substring(comma + 1));
+    }
+
+    private List<String> readLines(File source) throws IOException {
+        String text = Files.readString(source.toPath(), StandardCharsets.UTF_8);
+        int end = text.lastIndexOf('\n');
+        if (end < 0) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(text.substring(0, end).split("\n", -1)));
+    }
+
+    //новые записи не должны приклеиться к оборванной
+    private long truncateTornTail(File source) throws IOException {
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long end = size;
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            while (end > 0) {
+                buffer.clear();
+                channel.read(buffer, end - 1);
+                if (buffer.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < size) {
+                channel.truncate(end);
+            }
+            return end;
+        }
+    }
+
+    private TreeMap<Integer, File> findSegments() {
+        TreeMap<Integer, File> segments = new TreeMap<>();
+        File directory = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + ".";
+        File[] candidates = directory.listFiles((dir, name) -> name.startsWith(prefix)
+                && name.length() > prefix.length() && name.substring(prefix.length()).chars().allMatch(Character::isDigit));
+        if (candidates != null) {
+            for (File candidate : candidates) {
+                segments.put(Integer.parseInt(candidate.getName().substring(prefix.length())), candidate);
+            }
+        }
+        return segments;
+    }
+
+    private File getSegment(int segmentGeneration) {
+        return new File(file.getPath() + "." + segmentGeneration);
+    }
+}
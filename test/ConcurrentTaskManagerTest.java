@@ -0,0 +1,179 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import exception.ManagerAddTaskException;
+import exception.TaskNotFoundException;
+import model.Epic;
+import model.Operation;
+import model.OperationType;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.ConcurrentTaskManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentTaskManagerTest extends TaskManagerTest<ConcurrentTaskManager> {
+
+    private static final int THREADS = 8;
+
+    @Override
+    public ConcurrentTaskManager getTaskManager() {
+        return new ConcurrentTaskManager();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        taskManager = getTaskManager();
+    }
+
+    @Test
+    void shouldCreateSubtasksInParallelWithUniqueIds() throws Exception {
+        List<Epic> epics = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            epics.add(taskManager.createEpic(createDefaultEpic()));
+        }
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int thread = i;
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 200; j++) {
+                    taskManager.createSubtask(new Subtask("subtask", "description", TaskStatus.DONE,
+                            epics.get(thread).getId(), start.plusMinutes((j * THREADS + thread) * 10L),
+                            Duration.ofMinutes(10)));
+                    taskManager.getEpic(epics.get(thread).getId());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        List<Subtask> subtasks = taskManager.getAllSubtasks();
+        assertEquals(THREADS * 200, subtasks.size(), "Потеряны подзадачи.");
+        assertEquals(subtasks.size(), new HashSet<>(subtasks).size(), "Идентификаторы повторяются.");
+        assertEquals(subtasks.size(), taskManager.getPrioritizedTasks().size(), "Расписание неполное.");
+        for (Epic epic : epics) {
+            Optional<Epic> optEpic = taskManager.getEpic(epic.getId());
+            assertTrue(optEpic.isPresent(), "Эпик не найден по Id.");
+            assertEquals(200, optEpic.get().getSubtasksIds().size());
+            assertEquals(Duration.ofMinutes(2000), optEpic.get().getDuration());
+            assertEquals(TaskStatus.DONE, optEpic.get().getStatus());
+        }
+    }
+
+    @Test
+    void shouldAcceptOnlyOneOfOverlappingTasksCreatedInParallel() throws Exception {
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            int thread = i;
+            executor.submit(() -> {
+                try {
+                    taskManager.createTask(new Task("task", "description", TaskStatus.NEW,
+                            LocalDateTime.of(2025, 1, 1, 10, thread), Duration.ofMinutes(30)));
+                } catch (ManagerAddTaskException e) {
+                    rejected.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1, taskManager.getAllTasks().size(), "Созданы пересекающиеся задачи.");
+        assertEquals(THREADS - 1, rejected.get());
+        assertEquals(1, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void shouldReturnSameSnapshotUntilCollectionChanges() {
+        task = taskManager.createTask(createDefaultTask());
+        epic = taskManager.createEpic(createDefaultEpic());
+
+        List<Task> tasksBefore = taskManager.getAllTasks();
+        List<Epic> epicsBefore = taskManager.getAllEpics();
+
+        assertSame(tasksBefore, taskManager.getAllTasks(), "Снимок задач построен заново без изменений.");
+        assertSame(epicsBefore, taskManager.getAllEpics(), "Снимок эпиков построен заново без изменений.");
+        assertThrows(UnsupportedOperationException.class, () -> tasksBefore.add(task), "Снимок можно изменить.");
+
+        subtask = taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+        List<Task> tasksAfter = taskManager.getAllTasks();
+        List<Epic> epicsAfter = taskManager.getAllEpics();
+
+        assertSame(tasksBefore, tasksAfter, "Снимок задач изменился после создания подзадачи.");
+        assertNotSame(epicsBefore, epicsAfter, "Снимок эпиков не обновился.");
+        assertTrue(epicsBefore.getFirst().getSubtasksIds().isEmpty(), "Старый снимок эпиков изменился.");
+        assertEquals(List.of(subtask.getId()), epicsAfter.getFirst().getSubtasksIds());
+    }
+
+    @Test
+    void shouldNotRestoreTaskDeletedDuringBatchUpdate() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        for (int round = 0; round < 300; round++) {
+            Task created = taskManager.createTask(new Task("task", "description", TaskStatus.NEW, null, null));
+            Task update = new Task("updated", "description", TaskStatus.DONE, null, null);
+            update.setId(created.getId());
+            Future<?> updater = executor.submit(() -> {
+                try {
+                    for (int attempt = 0; attempt < 1_000; attempt++) {
+                        taskManager.applyBatch(List.of(new Operation(OperationType.UPDATE, update)));
+                    }
+                } catch (TaskNotFoundException e) {
+                    //задача удалена: пакет отклонён проверкой или при замене
+                }
+            });
+            Future<?> deleter = executor.submit(() -> taskManager.deleteTaskPerId(created.getId()));
+            deleter.get();
+            updater.get();
+
+            assertTrue(taskManager.getTask(created.getId()).isEmpty(), "Пакет вернул удалённую задачу.");
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void shouldNotHalfApplyBatchWhenTaskIsDeletedConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        for (int round = 0; round < 300; round++) {
+            taskManager.deleteAllTasks();
+            Task created = taskManager.createTask(new Task("task", "description", TaskStatus.NEW, null, null));
+            Task update = new Task("updated", "description", TaskStatus.DONE, null, null);
+            update.setId(created.getId());
+            Future<Integer> updater = executor.submit(() -> {
+                int applied = 0;
+                try {
+                    for (int attempt = 0; attempt < 1_000; attempt++) {
+                        taskManager.applyBatch(List.of(
+                                new Operation(OperationType.CREATE, new Task("new", "description", TaskStatus.NEW,
+                                        null, null)),
+                                new Operation(OperationType.UPDATE, update)));
+                        applied++;
+                    }
+                } catch (TaskNotFoundException e) {
+                    //задача удалена до проверки пакета
+                }
+                return applied;
+            });
+            Future<?> deleter = executor.submit(() -> taskManager.deleteTaskPerId(created.getId()));
+            deleter.get();
+
+            assertEquals(updater.get(), taskManager.getAllTasks().size(), "Пакет применён частично.");
+        }
+        executor.shutdown();
+    }
+}
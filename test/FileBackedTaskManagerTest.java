@@ -1,19 +1,37 @@
 import static org.junit.jupiter.api.Assertions.*;
 
+import exception.ManagerAddTaskException;
+import exception.ManagerBackupException;
+import exception.SnapshotCorruptedException;
 import model.Epic;
+import model.Operation;
+import model.OperationType;
 import model.Subtask;
 import model.Task;
 import model.TaskStatus;
 import org.junit.jupiter.api.BeforeEach;
+import service.Durability;
 import service.FileBackedTaskManager;
+import service.PersistenceMode;
+import service.SnapshotFormat;
 
 import org.junit.jupiter.api.Test;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
 
@@ -33,11 +51,21 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
     private void initFile() {
         try{
             data = File.createTempFile("taskManager_", ".csv");
+            FileBackedTaskManager.getBackupFile(data).deleteOnExit();
+            FileBackedTaskManager.getHistoryFile(data).deleteOnExit();
         } catch (IOException e) {
             throw new RuntimeException("Не удалось создать временный файл.");
         }
     }
 
+    //заголовок и записи снимка, без строк расписания, накопленных значений эпиков и сумм блоков
+    private static List<String> readRecordLines(File file) throws IOException {
+        return Files.readAllLines(file.toPath()).stream()
+                .filter(line -> !line.startsWith("schedule") && !line.startsWith("rollup")
+                        && !line.startsWith("block"))
+                .toList();
+    }
+
     @Test
     void shouldLoadFromEmptyFile() {
         taskManager = FileBackedTaskManager.loadFromFile(data);
@@ -55,7 +83,7 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
         epic = taskManager.createEpic(createDefaultEpic());
         subtask = taskManager.createSubtask(createDefaultSubtask(epic.getId()));
 
-        List<String> allLines = Files.readAllLines(data.toPath());
+        List<String> allLines = readRecordLines(data);
 
         assertEquals(allLines.size(), 4, "Не все задачи попали в файл.");
         assertFalse(allLines.get(0).isEmpty());
@@ -66,7 +94,7 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
         taskManager.deleteTaskPerId(task.getId());
         taskManager.deleteSubtaskPerId(subtask.getId());
         taskManager.deleteEpicPerId(epic.getId());
-        allLines = Files.readAllLines(data.toPath());
+        allLines = readRecordLines(data);
 
         assertEquals(allLines.size(), 1, "Файл не обновился после удаления задач");
         assertFalse(allLines.getFirst().isEmpty());
@@ -110,6 +138,73 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
         assertEquals(subtask.getEpicId(), 5);
     }
 
+    @Test
+    void shouldComputeEpicOnceAllSubtasksAreLoaded() throws IOException {
+        BufferedWriter bw = new BufferedWriter(new FileWriter(data));
+        bw.write(new StringBuilder().append("id,type,name,status,startTime,description,startTime,duration,epic\n")
+                                    .append("12,SUBTASK,Купить елку,NEW,,22.02.2025 18:00:00,120,5\n")
+                                    .append("5,EPIC,Украсить дом к НГ,NEW,,,0,\n")
+                                    .append("3,TASK,Водафон,DONE,Просмотреть новые тарифы,17.02.2025 12:15:00,25,\n")
+                                    .append("11,SUBTASK,купить гирлянды,DONE,,24.02.2025 15:15:00,25,5\n")
+                                    .append("checkpoint,0,20\n")
+                                    .toString());
+        bw.close();
+
+        taskManager = FileBackedTaskManager.loadFromFile(data);
+
+        epic = taskManager.getEpic(5).orElseThrow();
+        assertEquals(TaskStatus.IN_PROGRESS, epic.getStatus(), "Статус эпика не пересчитан по подзадачам.");
+        assertEquals(LocalDateTime.of(2025, 2, 22, 18, 0), epic.getStartTime(), "Начало эпика не пересчитано.");
+        assertEquals(Duration.ofMinutes(145), epic.getDuration(), "Длительность эпика не пересчитана.");
+        assertEquals(List.of(epic), taskManager.findByStatus(TaskStatus.IN_PROGRESS), "Эпик не в индексе статуса.");
+        assertEquals(21, taskManager.createTask(createDefaultTask()).getId(), "Счётчик id не взят из снимка.");
+    }
+
+    @Test
+    void shouldLoadInParallelAsSequentially() throws IOException {
+        StringBuilder content = new StringBuilder("id,type,name,status,startTime,description,startTime,duration,epic\n");
+        int epicCount = 1_000;
+        for (int id = 1; id <= epicCount; id++) {
+            content.append(String.format("%d,EPIC,Эпик %d,NEW,описание эпика,,0,\n", id, id));
+        }
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        for (int id = epicCount + 1; id <= 30_000; id++) {
+            String startTime = start.plusMinutes(id).format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss"));
+            if (id % 2 == 0) {
+                content.append(String.format("%d,TASK,Задача %d,DONE,описание,%s,1,\n", id, id, startTime));
+            } else {
+                TaskStatus status = TaskStatus.values()[id % 3];
+                content.append(String.format("%d,SUBTASK,Подзадача %d,%s,описание,%s,1,%d\n", id, id, status,
+                        startTime, id % epicCount + 1));
+            }
+        }
+        content.append("checkpoint,0,30005\n");
+        Files.writeString(data.toPath(), content);
+
+        FileBackedTaskManager sequential = FileBackedTaskManager.loadFromFile(data);
+        FileBackedTaskManager parallel = FileBackedTaskManager.loadFromFile(data, PersistenceMode.SNAPSHOT,
+                Durability.ASYNC, 4);
+
+        assertEquals(sequential.getAllTasks(), parallel.getAllTasks(), "Задачи загружены иначе.");
+        assertEquals(sequential.getAllSubtasks(), parallel.getAllSubtasks(), "Подзадачи загружены иначе.");
+        assertEquals(sequential.getAllEpics(), parallel.getAllEpics(), "Эпики загружены иначе.");
+        for (Epic loadedEpic : parallel.getAllEpics()) {
+            Epic expectedEpic = sequential.getEpic(loadedEpic.getId()).orElseThrow();
+            assertEquals(expectedEpic.getStatus(), loadedEpic.getStatus(), "Статус эпика посчитан иначе.");
+            assertEquals(expectedEpic.getDuration(), loadedEpic.getDuration(), "Длительность эпика посчитана иначе.");
+            assertEquals(expectedEpic.getSubtasksIds(), loadedEpic.getSubtasksIds(), "Подзадачи эпика иначе.");
+        }
+        assertEquals(30_006, parallel.createTask(createDefaultTask()).getId(), "Счётчик id не взят из снимка.");
+    }
+
+    @Test
+    void shouldNotLoadSubtaskWithoutEpic() throws IOException {
+        Files.writeString(data.toPath(), "7,SUBTASK,без эпика,DONE,,,0,99\n");
+
+        assertThrows(ManagerBackupException.class, () -> FileBackedTaskManager.loadFromFile(data),
+                "Подзадача без эпика не должна загружаться.");
+    }
+
     @Test
     void shouldInitializeCounterOfIds() throws IOException {
         BufferedWriter bw = new BufferedWriter(new FileWriter(data));
@@ -135,7 +230,7 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
         epic = taskManager.createEpic(createDefaultEpic());
         subtask = taskManager.createSubtask(createDefaultSubtask(epic.getId()));
 
-        List<String> allLinesBefore = Files.readAllLines(data.toPath());
+        List<String> allLinesBefore = readRecordLines(data);
         assertEquals(allLinesBefore.size(), 4);
 
         task.setName("UpdatedTask");
@@ -145,7 +240,7 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
         taskManager.updateEpic(epic);
         taskManager.updateSubtask(subtask);
 
-        List<String> allLinesAfter = Files.readAllLines(data.toPath());
+        List<String> allLinesAfter = readRecordLines(data);
         assertEquals(allLinesAfter.size(), 4);
         assertNotEquals(allLinesBefore.get(1), allLinesAfter.get(1), "Информация о задаче не изменилась.");
         assertNotEquals(allLinesBefore.get(2), allLinesAfter.get(2), "Информация об эпике не изменилась.");
@@ -166,16 +261,801 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
 
         taskManager = FileBackedTaskManager.loadFromFile(data);
 
-        List<String> allLinesBefore = Files.readAllLines(data.toPath());
+        List<String> allLinesBefore = readRecordLines(data);
 
         assertEquals(allLinesBefore.size(), 6, "Не все задачи попали в файл.");
         assertEquals(allLinesBefore.get(2), "3,TASK,Водафон,DONE,Просмотреть новые тарифы,17.02.2025 12:15:00,25,");
 
         task = taskManager.deleteTaskPerId(3);
 
-        List<String> allLinesAfter = Files.readAllLines(data.toPath());
+        List<String> allLinesAfter = readRecordLines(data);
 
         assertEquals(allLinesAfter.size(), 5, "Не все задачи попали в файл.");
         assertNotEquals(allLinesAfter.get(2), "3,TASK,Водафон,DONE,Просмотреть новые тарифы,17.02.2025 12:15:00,25,");
     }
+
+    @Test
+    void shouldSaveBatch() throws IOException {
+        epic = taskManager.createEpic(createDefaultEpic());
+
+        taskManager.applyBatch(List.of(
+                new Operation(OperationType.CREATE, createDefaultTask()),
+                new Operation(OperationType.CREATE, createDefaultSubtask(epic.getId())),
+                new Operation(OperationType.CREATE, createDefaultSubtask(epic.getId()))));
+
+        List<String> allLines = readRecordLines(data);
+        assertEquals(5, allLines.size(), "Не все задачи пакета попали в файл.");
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data);
+        assertEquals(taskManager.getAllTasks(), loadedManager.getAllTasks(), "Задачи пакета не восстановлены.");
+        assertEquals(taskManager.getAllSubtasks(), loadedManager.getAllSubtasks(), "Подзадачи пакета не восстановлены.");
+        assertEquals(2, loadedManager.getEpicSubtasks(epic.getId()).size(), "Подзадачи не привязаны к эпику.");
+    }
+
+    @Test
+    void shouldRollBackOperationsAppliedBeforeBatchFailure() {
+        for (PersistenceMode mode : List.of(PersistenceMode.SNAPSHOT, PersistenceMode.WRITE_AHEAD_LOG,
+                PersistenceMode.PAGED)) {
+            initFile();
+            FileBackedTaskManager.getLogFile(data).deleteOnExit();
+            new File(data.getPath() + ".heap").deleteOnExit();
+            //вторая операция пакета падает уже после проверки пакета
+            taskManager = new FileBackedTaskManager(data, mode) {
+                private int created;
+
+                @Override
+                public Task createTask(Task task) {
+                    if (++created == 2) {
+                        throw new IllegalStateException("Сбой посреди пакета.");
+                    }
+                    return super.createTask(task);
+                }
+            };
+
+            epic = taskManager.createEpic(createDefaultEpic());
+            subtask = taskManager.createSubtask(new Subtask("подзадача", "описание", TaskStatus.NEW, epic.getId(),
+                    LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(30)));
+            Subtask doneSubtask = new Subtask("подзадача", "описание", TaskStatus.DONE, epic.getId(),
+                    LocalDateTime.of(2025, 3, 1, 12, 0), Duration.ofMinutes(30));
+            doneSubtask.setId(subtask.getId());
+            Epic renamedEpic = new Epic("новое имя", epic.getDescription());
+            renamedEpic.setId(epic.getId());
+
+            assertThrows(IllegalStateException.class, () -> taskManager.applyBatch(List.of(
+                    new Operation(OperationType.UPDATE, doneSubtask),
+                    new Operation(OperationType.UPDATE, renamedEpic),
+                    new Operation(OperationType.CREATE, new Task("первая", "описание", TaskStatus.NEW, null, null)),
+                    new Operation(OperationType.CREATE, new Task("вторая", "описание", TaskStatus.NEW, null, null)))),
+                    "Сбой пакета не передан вызывающему.");
+
+            assertTrue(taskManager.getAllTasks().isEmpty(), "Созданная до сбоя задача не откачена в режиме " + mode);
+            assertEquals(List.of(subtask), taskManager.getAllSubtasks(), "Подзадача не откачена в режиме " + mode);
+            assertEquals(List.of(subtask), taskManager.getPrioritizedTasks(), "Расписание не откачено в режиме " + mode);
+            assertEquals(TaskStatus.NEW, taskManager.getEpic(epic.getId()).orElseThrow().getStatus(),
+                    "Статус эпика не откачен в режиме " + mode);
+            assertEquals(epic.getName(), taskManager.getEpic(epic.getId()).orElseThrow().getName(),
+                    "Имя эпика не откачено в режиме " + mode);
+            task = taskManager.createTask(new Task("после сбоя", "описание", TaskStatus.NEW, null, null));
+            assertEquals(subtask.getId() + 1, task.getId(), "Счётчик id не откачен в режиме " + mode);
+            taskManager.close();
+
+            FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data, mode);
+            assertEquals(List.of(task), loadedManager.getAllTasks(), "Откаченный пакет сохранён в режиме " + mode);
+            assertEquals(List.of(subtask), loadedManager.getAllSubtasks(), "Подзадача сохранена в режиме " + mode);
+            assertEquals(epic.getName(), loadedManager.getEpic(epic.getId()).orElseThrow().getName(),
+                    "Имя эпика сохранено в режиме " + mode);
+        }
+    }
+
+    @Test
+    void shouldAppendToLogAndReplayIt() throws IOException {
+        File log = FileBackedTaskManager.getLogFile(data);
+        log.deleteOnExit();
+        taskManager = new FileBackedTaskManager(data, PersistenceMode.WRITE_AHEAD_LOG);
+
+        task = taskManager.createTask(createDefaultTask());
+        Task deletedTask = taskManager.createTask(createDefaultTask());
+        epic = taskManager.createEpic(createDefaultEpic());
+        subtask = taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+        subtask.setStatus(TaskStatus.DONE);
+        taskManager.updateSubtask(subtask);
+        taskManager.deleteTaskPerId(deletedTask.getId());
+
+        assertEquals(0, data.length(), "Файл снимка перезаписан в режиме журнала.");
+        List<String> logLines = Files.readAllLines(log.toPath());
+        assertEquals("schema=2", logLines.getFirst(), "Журнал не начинается с версии схемы.");
+        assertEquals(6, logLines.size() - 1, "В журнал попало не по записи на операцию.");
+
+        Files.writeString(log.toPath(), "UPDATE,1,TASK,обрыв", StandardOpenOption.APPEND);
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data, PersistenceMode.WRITE_AHEAD_LOG);
+
+        assertEquals(List.of(task), loadedManager.getAllTasks(), "Задачи не восстановлены из журнала.");
+        assertEquals(List.of(subtask), loadedManager.getAllSubtasks(), "Подзадачи не восстановлены из журнала.");
+        assertEquals(TaskStatus.DONE, loadedManager.getEpic(epic.getId()).orElseThrow().getStatus(),
+                "Статус эпика не восстановлен из журнала.");
+
+        Task newTask = loadedManager.createTask(createDefaultTask());
+        assertEquals(subtask.getId() + 1, newTask.getId(), "Счётчик id не восстановлен из журнала.");
+    }
+
+    @Test
+    void shouldCheckpointLogAndLoadOnlyTail() throws Exception {
+        File log = FileBackedTaskManager.getLogFile(data);
+        log.deleteOnExit();
+        taskManager = new FileBackedTaskManager(data, PersistenceMode.WRITE_AHEAD_LOG);
+        taskManager.setCheckpointThresholds(3, Long.MAX_VALUE);
+
+        epic = taskManager.createEpic(createDefaultEpic());
+        for (int i = 0; i < 10; i++) {
+            taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+        }
+        Task deletedTask = taskManager.createTask(createDefaultTask());
+        taskManager.checkpoint().get();
+        taskManager.deleteTaskPerId(deletedTask.getId());
+
+        List<String> snapshot = readRecordLines(data);
+        assertTrue(snapshot.getLast().startsWith("checkpoint,"), "Снимок не отмечен контрольной точкой.");
+        assertEquals(List.of("schema=2", "DELETE,TASK," + deletedTask.getId()), Files.readAllLines(log.toPath()),
+                "Журнал не усечён после контрольной точки.");
+
+        //сегмент, уже вошедший в снимок, мог остаться после сбоя и повторно не применяется
+        File staleSegment = new File(log.getPath() + ".1");
+        staleSegment.deleteOnExit();
+        Files.writeString(staleSegment.toPath(), "DELETE,EPIC," + epic.getId() + "\n");
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data, PersistenceMode.WRITE_AHEAD_LOG);
+
+        assertFalse(staleSegment.exists(), "Устаревший сегмент журнала не удалён.");
+        assertTrue(loadedManager.getAllTasks().isEmpty(), "Хвост журнала не применён.");
+        assertEquals(taskManager.getAllSubtasks(), loadedManager.getAllSubtasks(), "Подзадачи не восстановлены.");
+        assertEquals(10, loadedManager.getEpicSubtasks(epic.getId()).size(), "Подзадачи не привязаны к эпику.");
+        assertEquals(deletedTask.getId() + 1, loadedManager.createTask(createDefaultTask()).getId(),
+                "Счётчик id не восстановлен из контрольной точки.");
+    }
+
+    @Test
+    void shouldReplayLogInEveryDurabilityMode() throws IOException {
+        for (Durability durability : Durability.values()) {
+            initFile();
+            FileBackedTaskManager.getLogFile(data).deleteOnExit();
+            taskManager = new FileBackedTaskManager(data, PersistenceMode.WRITE_AHEAD_LOG, durability);
+            taskManager.setGroupCommit(2, 5);
+
+            epic = taskManager.createEpic(createDefaultEpic());
+            subtask = taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+            task = taskManager.createTask(createDefaultTask());
+
+            FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data,
+                    PersistenceMode.WRITE_AHEAD_LOG, durability);
+
+            assertEquals(List.of(task), loadedManager.getAllTasks(), "Задачи не восстановлены в режиме " + durability);
+            assertEquals(List.of(subtask), loadedManager.getAllSubtasks(),
+                    "Подзадачи не восстановлены в режиме " + durability);
+        }
+    }
+
+    @Test
+    void shouldConfirmConcurrentWritesInGroupMode() throws Exception {
+        FileBackedTaskManager.getLogFile(data).deleteOnExit();
+        taskManager = new FileBackedTaskManager(data, PersistenceMode.WRITE_AHEAD_LOG, Durability.GROUP);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    taskManager.createTask(new Task("задача", "описание", TaskStatus.NEW, null, null));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data,
+                PersistenceMode.WRITE_AHEAD_LOG, Durability.GROUP);
+
+        assertEquals(400, loadedManager.getAllTasks().size(), "Подтверждённые задачи не восстановлены.");
+    }
+
+    @Test
+    void shouldReadWhileOtherThreadsWrite() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int thread = 0; thread < 2; thread++) {
+            int offset = thread;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    taskManager.createTask(new Task("задача", "описание", TaskStatus.NEW,
+                            LocalDateTime.of(2025, 1, 1, 0, 0).plusHours(2L * i + offset), Duration.ofMinutes(30)));
+                }
+            }));
+        }
+        List<Future<?>> readers = new ArrayList<>();
+        for (int thread = 0; thread < 2; thread++) {
+            readers.add(executor.submit(() -> {
+                while (!writers.stream().allMatch(Future::isDone)) {
+                    taskManager.getPrioritizedTasks();
+                    taskManager.getAllTasks();
+                }
+            }));
+        }
+        for (Future<?> future : writers) {
+            future.get();
+        }
+        for (Future<?> future : readers) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(400, taskManager.getPrioritizedTasks().size(), "Задачи потеряны при параллельном чтении.");
+    }
+
+    @Test
+    void shouldWriteBehindAndFlushOnClose() throws IOException {
+        taskManager = new FileBackedTaskManager(data, PersistenceMode.WRITE_BEHIND);
+        taskManager.setWriteBehind(20, 5);
+
+        epic = taskManager.createEpic(createDefaultEpic());
+        for (int i = 0; i < 20; i++) {
+            taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+        }
+        taskManager.flush();
+
+        assertEquals(22, readRecordLines(data).size(), "Изменения не записаны после flush.");
+
+        task = taskManager.createTask(createDefaultTask());
+        taskManager.close();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data);
+        assertEquals(List.of(task), loadedManager.getAllTasks(), "Изменения не записаны при закрытии.");
+        assertEquals(taskManager.getAllSubtasks(), loadedManager.getAllSubtasks(), "Подзадачи не записаны.");
+    }
+
+    @Test
+    void shouldSaveAndLoadBinarySnapshot() {
+        taskManager.setSnapshotFormat(SnapshotFormat.BINARY);
+
+        task = taskManager.createTask(new Task("Задача, с запятой", null, TaskStatus.IN_PROGRESS,
+                LocalDateTime.of(1969, 7, 20, 20, 17, 40), Duration.ofMinutes(90)));
+        Task taskWithoutTime = taskManager.createTask(new Task("без времени", "description", TaskStatus.NEW,
+                null, null));
+        epic = taskManager.createEpic(createDefaultEpic());
+        subtask = taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+        Subtask doneSubtask = taskManager.createSubtask(new Subtask("done", "description", TaskStatus.DONE,
+                epic.getId(), LocalDateTime.of(2025, 3, 1, 10, 0, 30), Duration.ofMinutes(15)));
+        Task deletedTask = taskManager.createTask(createDefaultTask());
+        taskManager.deleteTaskPerId(deletedTask.getId());
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data);
+
+        assertEquals(List.of(task, taskWithoutTime), loadedManager.getAllTasks(), "Задачи не восстановлены.");
+        assertEquals(List.of(subtask, doneSubtask), loadedManager.getAllSubtasks(), "Подзадачи не восстановлены.");
+        Task loadedTask = loadedManager.getTask(task.getId()).orElseThrow();
+        assertEquals(task.getName(), loadedTask.getName(), "Имя задачи искажено.");
+        assertNull(loadedTask.getDescription(), "Пустое описание не сохранено.");
+        assertEquals(task.getStartTime(), loadedTask.getStartTime(), "Время начала искажено.");
+        assertEquals(task.getDuration(), loadedTask.getDuration(), "Длительность искажена.");
+        assertNull(loadedManager.getTask(taskWithoutTime.getId()).orElseThrow().getStartTime());
+        assertEquals(TaskStatus.IN_PROGRESS, loadedManager.getEpic(epic.getId()).orElseThrow().getStatus(),
+                "Статус эпика не восстановлен.");
+        assertEquals(deletedTask.getId() + 1, loadedManager.createTask(createDefaultTask()).getId(),
+                "Счётчик id не восстановлен.");
+    }
+
+    @Test
+    void shouldFallBackToBackupWhenSnapshotIsCorrupted() throws IOException {
+        File backup = FileBackedTaskManager.getBackupFile(data);
+        backup.deleteOnExit();
+        task = taskManager.createTask(createDefaultTask());
+        taskManager.createTask(createDefaultTask());
+
+        //запись оборвалась посреди строки: сумма в заголовке больше не сходится с телом
+        byte[] content = Files.readAllBytes(data.toPath());
+        Files.write(data.toPath(), Arrays.copyOf(content, content.length - 5));
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data);
+        assertEquals(List.of(task), loadedManager.getAllTasks(), "Не загружен предыдущий снимок.");
+
+        Files.delete(backup.toPath());
+        assertThrows(SnapshotCorruptedException.class, () -> FileBackedTaskManager.loadFromFile(data),
+                "Повреждённый снимок загружен без ошибки.");
+    }
+
+    @Test
+    void shouldRestoreScheduleAfterLoad() {
+        LocalDateTime start = LocalDateTime.of(2025, 2, 17, 12, 0);
+        epic = taskManager.createEpic(createDefaultEpic());
+        subtask = taskManager.createSubtask(new Subtask("subtask", "description", TaskStatus.NEW, epic.getId(),
+                start, Duration.ofMinutes(30)));
+        task = taskManager.createTask(new Task("task", "description", TaskStatus.NEW, start.minusHours(1),
+                Duration.ofMinutes(30)));
+        taskManager.createTask(new Task("без времени", "description", TaskStatus.NEW, null, null));
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data);
+
+        assertEquals(List.of(task, subtask), loadedManager.getPrioritizedTasks(), "Расписание не восстановлено.");
+        assertThrows(ManagerAddTaskException.class, () -> loadedManager.createTask(new Task("пересечение",
+                "description", TaskStatus.NEW, start.plusMinutes(10), Duration.ofMinutes(5))),
+                "Пересечение с загруженной задачей не найдено.");
+    }
+
+    @Test
+    void shouldNotScheduleOverlappingTasksFromFile() throws IOException {
+        Files.writeString(data.toPath(), """
+                id,type,name,status,startTime,description,startTime,duration,epic
+                1,TASK,первая,NEW,,17.02.2025 12:00:00,60,
+                2,TASK,вторая,NEW,,17.02.2025 12:30:00,60,
+                3,TASK,третья,NEW,,17.02.2025 13:00:00,60,
+                """);
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data);
+
+        assertEquals(3, loadedManager.getAllTasks().size(), "Задачи не загружены.");
+        assertEquals(List.of(1, 3), loadedManager.getPrioritizedTasks().stream().map(Task::getId).toList(),
+                "Пересекающаяся задача попала в расписание.");
+    }
+
+    @Test
+    void shouldKeepCommasAndLineBreaksInText() {
+        task = taskManager.createTask(new Task("Купить: хлеб, молоко", "первая строка\nвторая, с \\c и \\",
+                TaskStatus.NEW, null, Duration.ofMinutes(10)));
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data);
+        Task loaded = loadedManager.getTask(task.getId()).orElseThrow();
+
+        assertEquals(task.getName(), loaded.getName(), "Имя с запятой не восстановлено.");
+        assertEquals(task.getDescription(), loaded.getDescription(), "Описание с переводом строки не восстановлено.");
+    }
+
+    @Test
+    void shouldMigrateLegacyLogOnReplay() throws IOException {
+        File log = FileBackedTaskManager.getLogFile(data);
+        log.deleteOnExit();
+        new File(log.getPath() + ".1").deleteOnExit();
+        Files.writeString(log.toPath(), """
+                CREATE,1,TASK,C:\\temp,NEW,папка \\c,17.02.2025 12:00:00,60,
+                DELETE,TASK,1
+                CREATE,2,TASK,D:\\work,NEW,описание,18.02.2025 12:00:00,60,
+                """);
+
+        taskManager = FileBackedTaskManager.loadFromFile(data, PersistenceMode.WRITE_AHEAD_LOG);
+        assertEquals("D:\\work", taskManager.getTask(2).orElseThrow().getName(),
+                "Запись журнала старой версии прочитана неверно.");
+        assertTrue(taskManager.getTask(1).isEmpty(), "Удаление из журнала старой версии не применено.");
+
+        Task newTask = taskManager.createTask(new Task("E:\\new", "описание", TaskStatus.NEW, null, null));
+        assertEquals("schema=2", Files.readAllLines(log.toPath()).getFirst(),
+                "Новые записи дописаны в файл журнала старой версии.");
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data, PersistenceMode.WRITE_AHEAD_LOG);
+        assertEquals("D:\\work", loadedManager.getTask(2).orElseThrow().getName(),
+                "Запись старой версии не пережила перезапуск.");
+        assertEquals("E:\\new", loadedManager.getTask(newTask.getId()).orElseThrow().getName(),
+                "Запись текущей версии прочитана неверно.");
+    }
+
+    @Test
+    void shouldMigrateLegacySnapshotOnLoad() throws IOException {
+        Files.writeString(data.toPath(), """
+                id,type,name,status,startTime,description,startTime,duration,epic
+                1,TASK,C:\\temp,NEW,папка \\c,17.02.2025 12:00:00,60,
+                """);
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data);
+        Task loaded = loadedManager.getTask(1).orElseThrow();
+        assertEquals("C:\\temp", loaded.getName(), "Запись старой версии прочитана неверно.");
+        assertEquals("папка \\c", loaded.getDescription(), "Запись старой версии прочитана неверно.");
+
+        loadedManager.createTask(createDefaultTask());
+        assertTrue(Files.readAllLines(data.toPath()).get(0)
+                        .startsWith("id,type,name,status,description,startTime,duration,epic,schema=2,"),
+                "Снимок не записан в текущей версии.");
+        assertEquals("C:\\temp", FileBackedTaskManager.loadFromFile(data).getTask(1).orElseThrow().getName(),
+                "Запись не пережила переход на текущую версию.");
+    }
+
+    @Test
+    void shouldUpgradeSnapshotWithoutLoading() throws IOException {
+        Files.writeString(data.toPath(), """
+                1,TASK,C:\\temp,NEW,описание,17.02.2025 12:00:00,60,
+                2,EPIC,эпик,NEW,описание,,0,
+                3,SUBTASK,подзадача,DONE,описание,17.02.2025 14:00:00,30,2
+                """);
+
+        assertTrue(FileBackedTaskManager.upgradeSnapshot(data), "Снимок старой версии не обновлён.");
+        assertFalse(FileBackedTaskManager.upgradeSnapshot(data), "Снимок текущей версии обновлён повторно.");
+
+        List<String> lines = readRecordLines(data);
+        assertEquals(4, lines.size(), "Записи потеряны при обновлении.");
+        assertEquals("1,TASK,C:\\\\temp,NEW,описание,17.02.2025 12:00:00,60,", lines.get(1),
+                "Запись не переведена в текущую версию.");
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data);
+        assertEquals("C:\\temp", loadedManager.getTask(1).orElseThrow().getName(), "Обновлённый снимок не читается.");
+        assertEquals(TaskStatus.DONE, loadedManager.getEpic(2).orElseThrow().getStatus(), "Эпик не восстановлен.");
+    }
+
+    @Test
+    void shouldNotUpgradeCorruptedSnapshot() throws IOException {
+        taskManager.createTask(createDefaultTask());
+        List<String> lines = Files.readAllLines(data.toPath());
+        String legacy = lines.get(0).replace("id,type,name,status,description,startTime,duration,epic,schema=2",
+                "id,type,name,status,startTime,description,startTime,duration,epic");
+        Files.writeString(data.toPath(), legacy + "\n" + lines.get(1).replace("NEW", "DONE") + "\n");
+
+        assertThrows(SnapshotCorruptedException.class, () -> FileBackedTaskManager.upgradeSnapshot(data),
+                "Испорченный снимок обновлён.");
+        assertTrue(Files.readString(data.toPath()).startsWith("id,type,name,status,startTime"),
+                "Испорченный снимок заменён.");
+    }
+
+    @Test
+    void shouldBackupStateAtTheMomentOfRequest() throws IOException {
+        for (PersistenceMode mode : List.of(PersistenceMode.SNAPSHOT, PersistenceMode.WRITE_AHEAD_LOG)) {
+            initFile();
+            FileBackedTaskManager.getLogFile(data).deleteOnExit();
+            FileBackedTaskManager manager = new FileBackedTaskManager(data, mode);
+            task = manager.createTask(createDefaultTask());
+            epic = manager.createEpic(createDefaultEpic());
+            subtask = manager.createSubtask(createDefaultSubtask(epic.getId()));
+            Task deletedTask = manager.createTask(createDefaultTask());
+            manager.deleteTaskPerId(deletedTask.getId());
+
+            //изменение, сделанное посреди копирования, в копию не попадает
+            ByteArrayOutputStream backup = new ByteArrayOutputStream() {
+                @Override
+                public void write(byte[] bytes, int offset, int length) {
+                    if (size() == 0) {
+                        manager.createTask(createDefaultTask());
+                    }
+                    super.write(bytes, offset, length);
+                }
+            };
+            manager.backup(backup);
+            File copy = File.createTempFile("backup_", ".csv");
+            copy.deleteOnExit();
+            Files.write(copy.toPath(), backup.toByteArray());
+
+            FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(copy);
+            assertEquals(List.of(task), restored.getAllTasks(), "Копия не соответствует моменту запроса: " + mode);
+            assertEquals(List.of(subtask), restored.getAllSubtasks(), "Подзадачи не скопированы: " + mode);
+            assertEquals(2, manager.getAllTasks().size(), "Изменение во время копирования потеряно: " + mode);
+        }
+    }
+
+    @Test
+    void shouldRestoreHistoryAfterRestart() {
+        taskManager.setViewLogging(true);
+        task = taskManager.createTask(createDefaultTask());
+        epic = taskManager.createEpic(createDefaultEpic());
+        subtask = taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+        Task deletedTask = taskManager.createTask(createDefaultTask());
+        taskManager.getTask(task.getId());
+        taskManager.getSubtask(subtask.getId());
+        taskManager.getTask(deletedTask.getId());
+        taskManager.getEpic(epic.getId());
+        taskManager.getTask(task.getId());
+        taskManager.deleteTaskPerId(deletedTask.getId());
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data);
+
+        assertEquals(List.of(subtask.getId(), epic.getId(), task.getId()),
+                loadedManager.getHistory().stream().map(Task::getId).toList(), "История не восстановлена.");
+        loadedManager.setViewLogging(true);
+        loadedManager.getSubtask(subtask.getId());
+        assertEquals(List.of(epic.getId(), task.getId(), subtask.getId()),
+                FileBackedTaskManager.loadFromFile(data).getHistory().stream().map(Task::getId).toList(),
+                "Просмотр после загрузки не дописан в журнал.");
+    }
+
+    @Test
+    void shouldNotLogViewsInSnapshotModeByDefault() {
+        task = taskManager.createTask(createDefaultTask());
+        taskManager.getTask(task.getId());
+
+        assertFalse(FileBackedTaskManager.getHistoryFile(data).exists(), "Просмотр записан на диск в режиме SNAPSHOT.");
+    }
+
+    @Test
+    void shouldNotTruncateHistoryLogThatWasNotLoaded() throws IOException {
+        File history = FileBackedTaskManager.getHistoryFile(data);
+        byte[] content = ByteBuffer.allocate(8).putInt(1).putInt(2).array();
+        Files.write(history.toPath(), content);
+        taskManager = new FileBackedTaskManager(data, PersistenceMode.WRITE_AHEAD_LOG);
+        FileBackedTaskManager.getLogFile(data).deleteOnExit();
+        task = taskManager.createTask(createDefaultTask());
+        taskManager.getTask(task.getId());
+
+        assertArrayEquals(content, Files.readAllBytes(history.toPath()), "Чужой журнал просмотров изменён.");
+    }
+
+    @Test
+    void shouldCompactHistoryLog() {
+        taskManager.setViewLogging(true);
+        task = taskManager.createTask(createDefaultTask());
+        epic = taskManager.createEpic(createDefaultEpic());
+        for (int i = 0; i < 10_000; i++) {
+            taskManager.getTask(task.getId());
+            taskManager.getEpic(epic.getId());
+        }
+
+        assertTrue(FileBackedTaskManager.getHistoryFile(data).length() < 8 * 1024, "Журнал просмотров не сжат.");
+        assertEquals(List.of(task.getId(), epic.getId()),
+                FileBackedTaskManager.loadFromFile(data).getHistory().stream().map(Task::getId).toList(),
+                "История после сжатия восстановлена неверно.");
+    }
+
+    @Test
+    void shouldDetectCorruptedBinarySnapshot() throws IOException {
+        taskManager.setSnapshotFormat(SnapshotFormat.BINARY);
+        task = taskManager.createTask(createDefaultTask());
+        Files.delete(FileBackedTaskManager.getBackupFile(data).toPath());
+
+        byte[] content = Files.readAllBytes(data.toPath());
+        content[content.length - 10] ^= 1;
+        Files.write(data.toPath(), content);
+
+        assertThrows(SnapshotCorruptedException.class, () -> FileBackedTaskManager.loadFromFile(data),
+                "Искажённый бинарный снимок загружен без ошибки.");
+    }
+
+    @Test
+    void shouldDetectCorruptedLengthInBinarySnapshot() throws IOException {
+        //двоичный снимок версии 1, без контрольных сумм: число записей испорчено и больше размера файла
+        byte[] content = ByteBuffer.allocate(12).putInt(0x544B4D42).put((byte) 1).put((byte) 0).put((byte) 0)
+                .put(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07}).array();
+        Files.write(data.toPath(), content);
+
+        assertThrows(SnapshotCorruptedException.class, () -> FileBackedTaskManager.loadFromFile(data),
+                "Испорченная длина в двоичном снимке не распознана как повреждение.");
+    }
+
+    @Test
+    void shouldDetectDamagedBlockWithoutHeaderChecksum() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int id = 1; id <= 40_000; id++) {
+            content.append(String.format("%d,TASK,Задача %d,NEW,описание задачи,,0,\n", id, id));
+        }
+        Files.writeString(data.toPath(), content);
+        FileBackedTaskManager.upgradeSnapshot(data);
+        assertEquals(40_000, FileBackedTaskManager.loadFromFile(data, PersistenceMode.SNAPSHOT, Durability.ASYNC, 4)
+                .getAllTasks().size(), "Снимок с суммами блоков загружен частями неверно.");
+        //без суммы в заголовке, как у снимка, отданного потоком: порчу находят только суммы блоков
+        Files.writeString(data.toPath(), Files.readString(data.toPath()).replaceFirst(",crc32c=[0-9a-f]+", "")
+                .replace("Задача 30000,", "Задача 30001,"));
+
+        assertThrows(SnapshotCorruptedException.class, () -> FileBackedTaskManager.loadFromFile(data),
+                "Испорченный блок загружен без ошибки.");
+        assertThrows(SnapshotCorruptedException.class, () -> FileBackedTaskManager.loadFromFile(data,
+                PersistenceMode.SNAPSHOT, Durability.ASYNC, 4), "Испорченный блок загружен частями без ошибки.");
+    }
+
+    @Test
+    void shouldRestoreScheduleOrderFromSnapshot() {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            initFile();
+            taskManager = new FileBackedTaskManager(data);
+            taskManager.setSnapshotFormat(format);
+            task = taskManager.createTask(new Task("первая", "description", TaskStatus.NEW,
+                    LocalDateTime.of(2025, 2, 17, 12, 0), Duration.ofMinutes(60)));
+            Task moved = taskManager.createTask(new Task("вторая", "description", TaskStatus.NEW,
+                    LocalDateTime.of(2025, 2, 17, 14, 0), Duration.ofMinutes(30)));
+            epic = taskManager.createEpic(createDefaultEpic());
+            subtask = taskManager.createSubtask(new Subtask("подзадача", "description", TaskStatus.DONE,
+                    epic.getId(), LocalDateTime.of(2025, 2, 18, 9, 0), Duration.ofMinutes(45)));
+            //перенос на занятое время оставляет задачу вне расписания, хотя она начинается раньше первой
+            Task overlapping = new Task(moved.getName(), moved.getDescription(), moved.getStatus(),
+                    LocalDateTime.of(2025, 2, 17, 11, 30), Duration.ofMinutes(60));
+            overlapping.setId(moved.getId());
+            taskManager.updateTask(overlapping);
+
+            FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data);
+
+            assertEquals(List.of(task, subtask), loadedManager.getPrioritizedTasks(),
+                    "Расписание восстановлено не из снимка: " + format);
+            assertEquals(subtask.getEndTime(), loadedManager.getEpic(epic.getId()).orElseThrow().getEndTime(),
+                    "Конец эпика не восстановлен: " + format);
+        }
+    }
+
+    @Test
+    void shouldRejectSnapshotWithOverlappingScheduledTasks() throws IOException {
+        Files.writeString(data.toPath(), "id,type,name,status,description,startTime,duration,epic,schema=2\n"
+                + "1,TASK,первая,NEW,description,17.02.2025 12:00:00,60,\n"
+                + "2,TASK,вторая,NEW,description,17.02.2025 12:30:00,60,\n"
+                + "schedule,1,2\n");
+
+        assertThrows(ManagerBackupException.class, () -> FileBackedTaskManager.loadFromFile(data),
+                "Пересекающиеся задачи расписания молча отброшены.");
+    }
+
+    @Test
+    void shouldRejectSnapshotWithStaleEpicRollup() throws IOException {
+        epic = taskManager.createEpic(createDefaultEpic());
+        subtask = taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+        List<String> lines = new ArrayList<>(Files.readAllLines(data.toPath()));
+        //файл без суммы в заголовке, чтобы правка дошла до проверки эпиков
+        lines.set(0, "id,type,name,status,description,startTime,duration,epic,schema=2");
+        lines.replaceAll(line -> line.startsWith("rollup") ? line.replace(",1,NEW,", ",2,NEW,") : line);
+        Files.write(data.toPath(), lines);
+
+        assertThrows(ManagerBackupException.class, () -> FileBackedTaskManager.loadFromFile(data),
+                "Эпик, не сходящийся с подзадачами, загружен без ошибки.");
+    }
+
+    @Test
+    void shouldUpdateMappedSlotsInPlace() {
+        taskManager = new FileBackedTaskManager(data, PersistenceMode.MAPPED);
+        File heap = new File(data.getPath() + ".heap");
+
+        task = taskManager.createTask(createDefaultTask());
+        epic = taskManager.createEpic(createDefaultEpic());
+        subtask = taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+        Subtask deletedSubtask = taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+        taskManager.deleteSubtaskPerId(deletedSubtask.getId());
+        long slotsLength = data.length();
+        long heapLength = heap.length();
+
+        Subtask doneSubtask = new Subtask(subtask.getName(), subtask.getDescription(), TaskStatus.DONE,
+                epic.getId(), subtask.getStartTime(), subtask.getDuration());
+        doneSubtask.setId(subtask.getId());
+        taskManager.updateSubtask(doneSubtask);
+
+        assertEquals(slotsLength, data.length(), "Файл слотов не должен расти при обновлении.");
+        assertEquals(heapLength, heap.length(), "Неизменённые строки не должны дописываться.");
+
+        Task renamedTask = new Task("новое имя", task.getDescription(), task.getStatus(), task.getStartTime(),
+                task.getDuration());
+        renamedTask.setId(task.getId());
+        taskManager.updateTask(renamedTask);
+        taskManager.close();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data, PersistenceMode.MAPPED);
+
+        assertEquals(List.of(renamedTask), loadedManager.getAllTasks(), "Задачи не восстановлены.");
+        assertEquals("новое имя", loadedManager.getTask(task.getId()).orElseThrow().getName(),
+                "Имя задачи не обновлено.");
+        assertEquals(List.of(doneSubtask), loadedManager.getAllSubtasks(), "Подзадачи не восстановлены.");
+        assertEquals(TaskStatus.DONE, loadedManager.getEpic(epic.getId()).orElseThrow().getStatus(),
+                "Статус эпика не обновлён.");
+        assertEquals(deletedSubtask.getId() + 1, loadedManager.createTask(createDefaultTask()).getId(),
+                "Счётчик id не восстановлен.");
+    }
+
+    @Test
+    void shouldWriteOnlyDirtyPagesOnFlush() {
+        taskManager = new FileBackedTaskManager(data, PersistenceMode.PAGED);
+        epic = taskManager.createEpic(createDefaultEpic());
+        for (int i = 0; i < 500; i++) {
+            taskManager.createSubtask(new Subtask("подзадача " + i, "описание", TaskStatus.NEW, epic.getId(),
+                    null, null));
+        }
+        taskManager.flush();
+        long length = data.length();
+        subtask = taskManager.getAllSubtasks().get(250);
+
+        Subtask doneSubtask = new Subtask(subtask.getName(), subtask.getDescription(), TaskStatus.DONE,
+                epic.getId(), null, null);
+        doneSubtask.setId(subtask.getId());
+        taskManager.updateSubtask(doneSubtask);
+
+        assertEquals(TaskStatus.NEW, FileBackedTaskManager.loadFromFile(data).getSubtask(subtask.getId())
+                .orElseThrow().getStatus(), "В режиме ASYNC изменения копятся до flush.");
+
+        taskManager.flush();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data, PersistenceMode.PAGED);
+        assertEquals(length, data.length(), "Файл не должен переписываться и расти.");
+        assertEquals(TaskStatus.DONE, loadedManager.getSubtask(subtask.getId()).orElseThrow().getStatus(),
+                "Изменённая страница не записана.");
+        assertEquals(TaskStatus.IN_PROGRESS, loadedManager.getEpic(epic.getId()).orElseThrow().getStatus(),
+                "Страница эпика не записана.");
+        assertEquals(taskManager.getAllSubtasks(), loadedManager.getAllSubtasks(), "Подзадачи не восстановлены.");
+    }
+
+    @Test
+    void shouldCompactSlotHeapOnClose() {
+        taskManager = new FileBackedTaskManager(data, PersistenceMode.PAGED);
+        File heap = new File(data.getPath() + ".heap");
+        File compactedHeap = new File(data.getPath() + ".heap.1");
+        compactedHeap.deleteOnExit();
+        task = taskManager.createTask(createDefaultTask());
+        Task updatedTask = null;
+        for (int i = 0; i < 300; i++) {
+            updatedTask = new Task(task.getName(), i + "x".repeat(4096), task.getStatus(), task.getStartTime(),
+                    task.getDuration());
+            updatedTask.setId(task.getId());
+            taskManager.updateTask(updatedTask);
+        }
+        assertTrue(heap.length() > 300 * 4096, "Прежние строки должны оставаться в куче до закрытия.");
+        taskManager.close();
+
+        assertFalse(heap.exists(), "Прежняя куча не удалена после сжатия.");
+        assertTrue(compactedHeap.length() < 2 * 4096, "Куча не сжата.");
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data, PersistenceMode.PAGED);
+        assertEquals(List.of(updatedTask), loadedManager.getAllTasks(), "Задачи после сжатия не восстановлены.");
+        assertEquals(updatedTask.getDescription(), loadedManager.getTask(task.getId()).orElseThrow()
+                .getDescription(), "Описание после сжатия прочитано неверно.");
+    }
+
+    @Test
+    void shouldRestorePreviousSlotVersionWhenItsStringsAreLost() throws IOException {
+        taskManager = new FileBackedTaskManager(data, PersistenceMode.MAPPED);
+        File heap = new File(data.getPath() + ".heap");
+        heap.deleteOnExit();
+        task = taskManager.createTask(createDefaultTask());
+        epic = taskManager.createEpic(createDefaultEpic());
+        subtask = taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+        taskManager.flush();
+        long heapLength = heap.length();
+        for (String name : List.of("новое имя эпика", "ещё одно имя эпика")) {
+            Epic renamedEpic = new Epic(name, epic.getDescription());
+            renamedEpic.setId(epic.getId());
+            taskManager.updateEpic(renamedEpic);
+        }
+        Task lateTask = taskManager.createTask(new Task("поздняя", "описание", TaskStatus.NEW, null, null));
+        taskManager.close();
+
+        //страницы слотов дошли до диска, а хвост кучи - нет
+        try (RandomAccessFile file = new RandomAccessFile(heap, "rw")) {
+            file.setLength(heapLength);
+        }
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data, PersistenceMode.MAPPED);
+
+        assertEquals(List.of(task), loadedManager.getAllTasks(), "Оборванная задача не отброшена.");
+        assertEquals(epic.getName(), loadedManager.getEpic(epic.getId()).orElseThrow().getName(),
+                "Не восстановлена сброшенная версия эпика.");
+        assertEquals(List.of(subtask), loadedManager.getAllSubtasks(), "Подзадача эпика потеряна.");
+        assertEquals(lateTask.getId() + 1, loadedManager.createTask(createDefaultTask()).getId(),
+                "Счётчик id не восстановлен.");
+    }
+
+    @Test
+    void shouldRestorePreviousSlotVersionWhenItsStringsAreDamaged() throws IOException {
+        taskManager = new FileBackedTaskManager(data, PersistenceMode.PAGED);
+        File heap = new File(data.getPath() + ".heap");
+        heap.deleteOnExit();
+        epic = taskManager.createEpic(createDefaultEpic());
+        taskManager.flush();
+        Epic renamedEpic = new Epic("новое имя эпика", epic.getDescription());
+        renamedEpic.setId(epic.getId());
+        taskManager.updateEpic(renamedEpic);
+        taskManager.close();
+
+        //новое имя - последние байты кучи; длина та же, но содержимое испорчено
+        byte[] content = Files.readAllBytes(heap.toPath());
+        content[content.length - 1] ^= 1;
+        Files.write(heap.toPath(), content);
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data, PersistenceMode.PAGED);
+
+        assertEquals(epic.getName(), loadedManager.getEpic(epic.getId()).orElseThrow().getName(),
+                "Испорченная строка кучи загружена.");
+    }
+
+    @Test
+    void shouldUpgradeSlotStoreOfFirstVersion() throws IOException {
+        File heap = new File(data.getPath() + ".heap");
+        File upgradedHeap = new File(data.getPath() + ".heap.1");
+        upgradedHeap.deleteOnExit();
+        byte[] name = "задача".getBytes(StandardCharsets.UTF_8);
+        Files.write(heap.toPath(), name);
+        //заголовок версии 1 в 16 байт и слот задачи 1 в 48 байт без суммы
+        ByteBuffer slots = ByteBuffer.allocate(16 + 48);
+        slots.putInt(0, 0x544B4D4D).putInt(4, 1).putInt(8, 1).putInt(12, 0);
+        slots.put(16, (byte) 1).put(17, (byte) TaskStatus.DONE.ordinal());
+        slots.putLong(24, LocalDateTime.of(2025, 2, 17, 12, 0).toEpochSecond(ZoneOffset.UTC));
+        slots.putLong(32, 30).putLong(40, 0).putInt(48, name.length).putInt(52, -1).putLong(56, 0);
+        Files.write(data.toPath(), slots.array());
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(data, PersistenceMode.PAGED);
+
+        task = loadedManager.getTask(1).orElseThrow();
+        assertEquals("задача", task.getName(), "Имя задачи не перенесено.");
+        assertNull(task.getDescription(), "Пустое описание не перенесено.");
+        assertEquals(TaskStatus.DONE, task.getStatus(), "Статус не перенесён.");
+        assertEquals(LocalDateTime.of(2025, 2, 17, 12, 30), task.getEndTime(), "Время не перенесено.");
+        assertFalse(heap.exists(), "Куча версии 1 не удалена.");
+        loadedManager.close();
+        assertEquals(List.of(task), FileBackedTaskManager.loadFromFile(data, PersistenceMode.PAGED).getAllTasks(),
+                "Переписанное хранилище не загружается.");
+    }
 }
@@ -0,0 +1,78 @@
+import api.HttpTaskServer;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import service.FileBackedTaskManager;
+import service.Managers;
+import service.TaskManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpTaskServerBackupTest {
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private HttpTaskServer httpTaskServer;
+
+    @AfterEach
+    void afterEach() {
+        httpTaskServer.stopHttpServer();
+    }
+
+    @Test
+    void shouldStreamBackupOfFileBackedManager() throws IOException, InterruptedException {
+        File data = File.createTempFile("taskManager_", ".csv");
+        data.deleteOnExit();
+        FileBackedTaskManager taskManager = new FileBackedTaskManager(data);
+        httpTaskServer = new HttpTaskServer(taskManager);
+        httpTaskServer.startHttpServer();
+        Task task = taskManager.createTask(new Task("Test task", "description", TaskStatus.NEW,
+                LocalDateTime.now(), Duration.ofMinutes(1)));
+        Epic epic = taskManager.createEpic(new Epic("name", "description"));
+        Subtask subtask = taskManager.createSubtask(new Subtask("Test subtask", "description", TaskStatus.DONE,
+                epic.getId(), LocalDateTime.now().plusMonths(1), Duration.ofMinutes(1)));
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/backup"))
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, response.statusCode());
+        File copy = File.createTempFile("backup_", ".csv");
+        copy.deleteOnExit();
+        Files.write(copy.toPath(), response.body());
+        FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(copy);
+        assertEquals(List.of(task), restored.getAllTasks(), "Задачи не попали в копию.");
+        assertEquals(List.of(subtask), restored.getAllSubtasks(), "Подзадачи не попали в копию.");
+        assertEquals(TaskStatus.DONE, restored.getEpic(epic.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void shouldNotBackupInMemoryManager() throws IOException, InterruptedException {
+        TaskManager taskManager = Managers.getDefault();
+        httpTaskServer = new HttpTaskServer(taskManager);
+        httpTaskServer.startHttpServer();
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/backup"))
+                .GET()
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(501, response.statusCode());
+    }
+}
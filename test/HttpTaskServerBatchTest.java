@@ -0,0 +1,98 @@
+import api.HttpTaskServer;
+import com.google.gson.Gson;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.Managers;
+import service.TaskManager;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpTaskServerBatchTest {
+
+    private final TaskManager taskManager = Managers.getDefault();
+    private final HttpTaskServer httpTaskServer = new HttpTaskServer(taskManager);
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final Gson gson = HttpTaskServer.createGson();
+
+    public HttpTaskServerBatchTest() throws IOException {
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        taskManager.deleteAllTasks();
+        taskManager.deleteAllEpics();
+        taskManager.deleteAllSubtasks();
+        httpTaskServer.startHttpServer();
+    }
+
+    @AfterEach
+    void afterEach() {
+        httpTaskServer.stopHttpServer();
+    }
+
+    @Test
+    void shouldApplyBatch() throws IOException, InterruptedException {
+        Epic epic = taskManager.createEpic(new Epic("name", "description"));
+        Task task = new Task("Test task", "This task is very important", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(30));
+        Subtask subtask = new Subtask("Test subtask", "This subtask is very important", TaskStatus.NEW, epic.getId(),
+                LocalDateTime.of(2025, 3, 1, 11, 0), Duration.ofMinutes(30));
+        String body = "[{\"type\": \"CREATE\", \"taskType\": \"TASK\", \"task\": " + gson.toJson(task) + "},"
+                + "{\"type\": \"CREATE\", \"taskType\": \"SUBTASK\", \"task\": " + gson.toJson(subtask) + "}]";
+
+        URI url = URI.create("http://localhost:8080/batch");
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(url)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(201, response.statusCode(), "Неверный код ответа");
+        assertEquals(1, taskManager.getAllTasks().size(), "Задача пакета не создана");
+        assertEquals(List.of(taskManager.getAllSubtasks().getFirst()), taskManager.getEpicSubtasks(epic.getId()),
+                "Подзадача пакета не привязана к эпику");
+    }
+
+    @Test
+    void shouldNotApplyBatchWithOverlapping() throws IOException, InterruptedException {
+        Task task = new Task("Test task", "This task is very important", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(30));
+        String body = "[{\"type\": \"CREATE\", \"taskType\": \"TASK\", \"task\": " + gson.toJson(task) + "},"
+                + "{\"type\": \"CREATE\", \"taskType\": \"TASK\", \"task\": " + gson.toJson(task) + "}]";
+
+        URI url = URI.create("http://localhost:8080/batch");
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(url)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(406, response.statusCode(), "Неверный код ответа");
+        assertTrue(taskManager.getAllTasks().isEmpty(), "Пакет применён частично");
+
+        HttpRequest badRequest = HttpRequest.newBuilder()
+                .uri(url)
+                .POST(HttpRequest.BodyPublishers.ofString("[{\"type\": \"DELETE\", \"taskType\": \"TASK\"}]"))
+                .build();
+
+        HttpResponse<String> badResponse = httpClient.send(badRequest, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(400, badResponse.statusCode(), "Неверный код ответа");
+    }
+}
@@ -71,6 +71,67 @@ public class HttpTaskServerPrioritizedTest {
         assertEquals(response.body(), prioritizedJson, "Данные истории не совпадают");
     }
 
+    @Test
+    void shouldReturnPrioritizedTasksInWindow() throws IOException, InterruptedException {
+        Task task1 = taskManager.createTask(new Task("Test task", "This task is very important", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(10)));
+        taskManager.createTask(new Task("Test task", "This task is very important", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 2, 10, 0), Duration.ofMinutes(10)));
+
+        String windowJson = gson.toJson(List.of(task1));
+
+        URI url = URI.create("http://localhost:8080/prioritized?from=01.03.2025%2000:00:00&to=02.03.2025%2000:00:00");
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(url)
+                .GET()
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode(), "Неверный код ответа");
+        assertEquals(windowJson, response.body(), "Задачи окна не совпадают");
+
+        URI badUrl = URI.create("http://localhost:8080/prioritized?from=01.03.2025%2000:00:00");
+        HttpRequest badRequest = HttpRequest.newBuilder()
+                .uri(badUrl)
+                .GET()
+                .build();
+
+        HttpResponse<String> badResponse = httpClient.send(badRequest, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(400, badResponse.statusCode(), "Неверный код ответа");
+    }
+
+    @Test
+    void shouldReturnFreeSlot() throws IOException, InterruptedException {
+        taskManager.createTask(new Task("Test task", "This task is very important", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(30)));
+
+        URI url = URI.create("http://localhost:8080/prioritized/free?duration=60"
+                + "&from=01.03.2025%2010:00:00&to=01.03.2025%2012:00:00");
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(url)
+                .GET()
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode(), "Неверный код ответа");
+        assertTrue(response.body().contains("01.03.2025 10:30:00"), "Неверное начало промежутка");
+        assertTrue(response.body().contains("01.03.2025 11:30:00"), "Неверный конец промежутка");
+
+        URI fullUrl = URI.create("http://localhost:8080/prioritized/free?duration=120"
+                + "&from=01.03.2025%2010:00:00&to=01.03.2025%2012:00:00");
+        HttpRequest fullRequest = HttpRequest.newBuilder()
+                .uri(fullUrl)
+                .GET()
+                .build();
+
+        HttpResponse<String> fullResponse = httpClient.send(fullRequest, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(404, fullResponse.statusCode(), "Неверный код ответа");
+    }
+
     @Test
     void shouldReturnEmptyPrioritizedTasksList() throws IOException, InterruptedException {
         assertTrue(taskManager.getPrioritizedTasks().isEmpty());
@@ -100,8 +161,35 @@ public class HttpTaskServerPrioritizedTest {
         HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
         assertEquals(405, response.statusCode(), "Неверный код ответа");
     }
-}
 
+    @Test
+    void shouldReturnPrioritizedPageAfterDeletedTask() throws IOException, InterruptedException {
+        Task first = taskManager.createTask(new Task("Test task", "This task is very important", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(10)));
+        Task second = taskManager.createTask(new Task("Test task", "This task is very important", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 11, 0), Duration.ofMinutes(10)));
+        taskManager.deleteTaskPerId(first.getId());
+
+        URI url = URI.create(String.format(
+                "http://localhost:8080/prioritized?afterStart=01.03.2025%%2010:00:00&after=%d&limit=5", first.getId()));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(url)
+                .GET()
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode(), "Неверный код ответа");
+        assertEquals(gson.toJson(List.of(second)), response.body(), "Страница не совпадает");
 
+        URI badUrl = URI.create(String.format("http://localhost:8080/prioritized?after=%d", first.getId()));
+        HttpRequest badRequest = HttpRequest.newBuilder()
+                .uri(badUrl)
+                .GET()
+                .build();
 
+        HttpResponse<String> badResponse = httpClient.send(badRequest, HttpResponse.BodyHandlers.ofString());
 
+        assertEquals(400, badResponse.statusCode(), "Неверный код ответа");
+    }
+}
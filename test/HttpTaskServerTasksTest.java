@@ -19,7 +19,9 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -251,6 +253,63 @@ public class HttpTaskServerTasksTest {
 
         assertEquals(406, response.statusCode(), "Неверный код ответа");
     }
-}
 
+    @Test
+    void shouldReturnTaskPage() throws IOException, InterruptedException {
+        Task[] tasks = new Task[5];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = taskManager.createTask(new Task("Test task " + i, "description", TaskStatus.NEW,
+                    LocalDateTime.of(2025, 3, 10, 12, i), Duration.ofMinutes(1)));
+        }
+        String pageJson = gson.toJson(List.of(tasks[2], tasks[3]));
+
+        URI url = URI.create(String.format("http://localhost:8080/tasks?after=%d&limit=2", tasks[1].getId()));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(url)
+                .GET()
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
 
+        assertEquals(200, response.statusCode(), "Неверный код ответа");
+        assertEquals(pageJson, response.body(), "Данные страницы не совпадают");
+    }
+
+    @Test
+    void testBadPageParameters() throws IOException, InterruptedException {
+        for (String query : List.of("after=f", "limit=0", "limit=-3")) {
+            URI url = URI.create("http://localhost:8080/tasks?" + query);
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(url)
+                    .GET()
+                    .build();
+
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, response.statusCode(), "Неверный код ответа");
+        }
+    }
+
+    @Test
+    void shouldCreateTasksConcurrentlyWithConcurrentManager() throws IOException, InterruptedException {
+        TaskManager concurrentManager = Managers.getConcurrent();
+        HttpTaskServer concurrentServer = new HttpTaskServer(concurrentManager, 8081);
+        concurrentServer.startHttpServer();
+        try {
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                String taskJson = gson.toJson(new Task("Task " + i, "Parallel", TaskStatus.NEW, null, null));
+                HttpRequest request = HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:8081/tasks"))
+                        .POST(HttpRequest.BodyPublishers.ofString(taskJson))
+                        .build();
+                responses.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                assertEquals(201, response.join().statusCode(), "Неверный код ответа");
+            }
+            assertEquals(50, concurrentManager.getAllTasks().size(), "Некорректное количество задач");
+        } finally {
+            concurrentServer.stopHttpServer();
+        }
+    }
+}
@@ -7,6 +7,9 @@ import model.TaskStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import service.InMemoryTaskManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -213,4 +216,53 @@ public class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager
         assertNotEquals(taskBefore.getDescription(), taskAfter.getDescription(), "Описание задач совпало.");
         assertNotEquals(taskBefore.getStatus(), taskAfter.getStatus(), "Статус задач совпал.");
     }
+
+    @Test
+    void shouldFindByStatusAfterChanges() {
+        task = taskManager.createTask(createDefaultTask());
+        epic = taskManager.createEpic(createDefaultEpic());
+        subtask = taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+
+        assertEquals(List.of(task, epic, subtask), taskManager.findByStatus(TaskStatus.NEW));
+        assertTrue(taskManager.findByStatus(TaskStatus.IN_PROGRESS).isEmpty());
+
+        subtask.setStatus(TaskStatus.DONE);
+        taskManager.updateSubtask(subtask);
+
+        assertEquals(List.of(task), taskManager.findByStatus(TaskStatus.NEW));
+        assertEquals(List.of(epic, subtask), taskManager.findByStatus(TaskStatus.DONE), "Статус эпика не переиндексирован.");
+
+        taskManager.deleteSubtaskPerId(subtask.getId());
+
+        assertEquals(List.of(task, epic), taskManager.findByStatus(TaskStatus.NEW));
+        assertTrue(taskManager.findByStatus(TaskStatus.DONE).isEmpty());
+
+        taskManager.deleteAllTasks();
+        taskManager.deleteAllEpics();
+
+        assertTrue(taskManager.findByStatus(TaskStatus.NEW).isEmpty());
+    }
+
+    @Test
+    void shouldFindByStartRange() {
+        epic = taskManager.createEpic(createDefaultEpic());
+        Task morning = taskManager.createTask(new Task("morning", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 3, 9, 0), Duration.ofMinutes(30)));
+        Subtask evening = taskManager.createSubtask(new Subtask("evening", "description", TaskStatus.NEW,
+                epic.getId(), LocalDateTime.of(2025, 3, 3, 20, 0), Duration.ofMinutes(30)));
+        Task nextWeek = taskManager.createTask(new Task("nextWeek", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 10, 9, 0), Duration.ofMinutes(30)));
+        taskManager.createTask(new Task("without time", "description", TaskStatus.NEW, null, null));
+
+        LocalDateTime weekStart = LocalDateTime.of(2025, 3, 3, 0, 0);
+        assertEquals(List.of(morning, evening), taskManager.findByStartRange(weekStart, weekStart.plusWeeks(1)));
+        assertEquals(List.of(evening), taskManager.findByStartRange(weekStart.plusHours(10), weekStart.plusHours(21)));
+        assertEquals(List.of(nextWeek), taskManager.findByStartRange(weekStart.plusWeeks(1), weekStart.plusWeeks(2)));
+
+        morning.setStartTime(LocalDateTime.of(2025, 3, 11, 9, 0));
+        taskManager.updateTask(morning);
+
+        assertEquals(List.of(evening), taskManager.findByStartRange(weekStart, weekStart.plusWeeks(1)));
+        assertEquals(List.of(nextWeek, morning), taskManager.findByStartRange(weekStart.plusWeeks(1), weekStart.plusWeeks(2)));
+    }
 }
@@ -0,0 +1,169 @@
+import api.HttpTaskServer;
+import exception.ManagerBackupException;
+import exception.ReadOnlyManagerException;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.FileBackedTaskManager;
+import service.PersistenceMode;
+import service.ReplicaTaskManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaTaskManagerTest {
+    private File data;
+    private FileBackedTaskManager primary;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        data = File.createTempFile("taskManager_", ".csv");
+        data.delete();
+        primary = new FileBackedTaskManager(data, PersistenceMode.WRITE_AHEAD_LOG);
+        primary.setCheckpointThresholds(Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void afterEach() {
+        primary.close();
+        File directory = data.getAbsoluteFile().getParentFile();
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(data.getName()));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    void shouldFollowPrimaryLogAcrossCheckpoints() throws ExecutionException, InterruptedException {
+        Task task = primary.createTask(new Task("task", "description", TaskStatus.NEW, null, null));
+        Epic epic = primary.createEpic(new Epic("epic", "description"));
+        ReplicaTaskManager replica = new ReplicaTaskManager(data, 0);
+
+        assertEquals(primary.getAllTasks(), replica.getAllTasks(), "Журнал до контрольной точки не прочитан.");
+
+        primary.checkpoint().get();
+        Subtask subtask = primary.createSubtask(new Subtask("subtask", "description", TaskStatus.DONE,
+                epic.getId(), LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(15)));
+        task.setStatus(TaskStatus.IN_PROGRESS);
+        primary.updateTask(task);
+
+        assertEquals(List.of(subtask), replica.getAllSubtasks(), "Запись после контрольной точки не применена.");
+        assertEquals(TaskStatus.IN_PROGRESS, replica.getTask(task.getId()).orElseThrow().getStatus(),
+                "Обновление не применено.");
+        assertEquals(TaskStatus.DONE, replica.getEpic(epic.getId()).orElseThrow().getStatus(),
+                "Статус эпика не пересчитан на реплике.");
+        assertEquals(List.of(subtask), replica.getPrioritizedTasks(), "Расписание реплики не обновлено.");
+
+        primary.deleteTaskPerId(task.getId());
+        assertTrue(replica.getAllTasks().isEmpty(), "Удаление не применено.");
+        assertThrows(ReadOnlyManagerException.class,
+                () -> replica.createTask(new Task("task", "description", TaskStatus.NEW, null, null)),
+                "Реплика приняла изменение.");
+        replica.close();
+    }
+
+    @Test
+    void shouldReloadSnapshotWhenLogIsRemovedBeforeReplicaReadsIt()
+            throws ExecutionException, InterruptedException {
+        primary.createTask(new Task("task", "description", TaskStatus.NEW, null, null));
+        ReplicaTaskManager replica = new ReplicaTaskManager(data, Long.MAX_VALUE);
+
+        //три контрольные точки подряд: сегменты, которые реплика не успела прочитать, удалены
+        for (int i = 0; i < 3; i++) {
+            primary.createTask(new Task("task " + i, "description", TaskStatus.NEW, null, null));
+            primary.checkpoint().get();
+        }
+        Task last = primary.createTask(new Task("last", "description", TaskStatus.NEW, null, null));
+
+        assertEquals(1, replica.getAllTasks().size(), "Реплика догнала журнал раньше срока.");
+        replica.catchUp();
+        assertEquals(primary.getAllTasks().stream().map(Task::getName).toList(),
+                replica.getAllTasks().stream().map(Task::getName).toList(), "Реплика не перечитала снимок.");
+        assertEquals(last.getName(), replica.getTask(last.getId()).orElseThrow().getName());
+        replica.close();
+    }
+
+    @Test
+    void shouldResyncAfterRecordThatCannotBeReplayed() throws IOException, ExecutionException, InterruptedException {
+        primary.createTask(new Task("task", "description", TaskStatus.NEW, null, null));
+        ReplicaTaskManager replica = new ReplicaTaskManager(data, Long.MAX_VALUE);
+
+        Files.writeString(FileBackedTaskManager.getLogFile(data).toPath(), "BROKEN\n", StandardOpenOption.APPEND);
+        primary.createTask(new Task("after broken", "description", TaskStatus.NEW, null, null));
+        //запись осталась в журнале, поэтому перечитывание со снимка тоже не удаётся
+        assertThrows(ManagerBackupException.class, replica::catchUp, "Ошибка перечитывания не обёрнута.");
+
+        primary.checkpoint().get();
+        Task last = primary.createTask(new Task("last", "description", TaskStatus.NEW, null, null));
+        replica.catchUp();
+        assertEquals(primary.getAllTasks().stream().map(Task::getName).toList(),
+                replica.getAllTasks().stream().map(Task::getName).toList(), "Реплика не перечитала снимок.");
+        assertEquals(last.getName(), replica.getTask(last.getId()).orElseThrow().getName());
+        replica.close();
+    }
+
+    @Test
+    void shouldCarryOnAfterResyncFromRecordThatCannotBeReplayed() throws IOException, ExecutionException,
+            InterruptedException {
+        primary.createTask(new Task("task", "description", TaskStatus.NEW, null, null));
+        ReplicaTaskManager replica = new ReplicaTaskManager(data, Long.MAX_VALUE);
+
+        //испорченная запись уже вошла в снимок контрольной точки: перечитывание со снимка её не встретит
+        Files.writeString(FileBackedTaskManager.getLogFile(data).toPath(), "BROKEN\n", StandardOpenOption.APPEND);
+        primary.createTask(new Task("after broken", "description", TaskStatus.NEW, null, null));
+        primary.checkpoint().get();
+        Task last = primary.createTask(new Task("last", "description", TaskStatus.NEW, null, null));
+
+        assertDoesNotThrow(replica::catchUp, "Ошибка выброшена после удачного перечитывания снимка.");
+        assertEquals(primary.getAllTasks().stream().map(Task::getName).toList(),
+                replica.getAllTasks().stream().map(Task::getName).toList(), "Реплика не перечитала снимок.");
+        assertEquals(last.getName(), replica.getTask(last.getId()).orElseThrow().getName());
+        replica.close();
+    }
+
+    @Test
+    void shouldServeReadsAndRejectWritesOverHttp() throws IOException, InterruptedException {
+        Task task = primary.createTask(new Task("task", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(15)));
+        ReplicaTaskManager replica = new ReplicaTaskManager(data, 0);
+        HttpTaskServer server = new HttpTaskServer(replica);
+        server.startHttpServer();
+        HttpClient httpClient = HttpClient.newHttpClient();
+        try {
+            HttpResponse<String> read = httpClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/tasks/" + task.getId()))
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> write = httpClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/tasks"))
+                    .POST(HttpRequest.BodyPublishers.ofString(HttpTaskServer.createGson().toJson(task)))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(200, read.statusCode());
+            assertEquals(HttpTaskServer.createGson().toJson(task), read.body(), "Реплика отдала другую задачу.");
+            assertEquals(405, write.statusCode(), "Реплика приняла изменение.");
+            assertEquals(1, primary.getAllTasks().size());
+        } finally {
+            server.stopHttpServer();
+            replica.close();
+        }
+    }
+}
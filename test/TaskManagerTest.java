@@ -1,6 +1,8 @@
 import exception.ManagerAddTaskException;
 import exception.TaskNotFoundException;
 import model.Epic;
+import model.Operation;
+import model.OperationType;
 import model.Subtask;
 import model.Task;
 import model.TaskStatus;
@@ -473,6 +475,41 @@ abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals(optEpic.get().getEndTime(), thirdSubtask.getStartTime().plus(thirdSubtask.getDuration()));
     }
 
+    @Test
+    void shouldRecalculateEpicAfterSubtaskUpdateAndDelete() {
+        epic = taskManager.createEpic(createDefaultEpic());
+        Subtask first = taskManager.createSubtask(new Subtask("name", "description", TaskStatus.DONE, epic.getId(),
+                LocalDateTime.of(2025, 1, 1, 10, 0), Duration.ofMinutes(30)));
+        Subtask last = taskManager.createSubtask(new Subtask("name2", "description2", TaskStatus.NEW, epic.getId(),
+                LocalDateTime.of(2025, 1, 3, 10, 0), Duration.ofMinutes(15)));
+
+        last.setStartTime(LocalDateTime.of(2025, 1, 2, 10, 0));
+        last.setStatus(TaskStatus.DONE);
+        taskManager.updateSubtask(last);
+        Optional<Epic> optEpic = taskManager.getEpic(epic.getId());
+        assertTrue(optEpic.isPresent(), "Эпик не найден по Id.");
+
+        assertEquals(TaskStatus.DONE, optEpic.get().getStatus(), "Статус эпика определен некорректно.");
+        assertEquals(LocalDateTime.of(2025, 1, 2, 10, 15), optEpic.get().getEndTime());
+        assertEquals(Duration.ofMinutes(45), optEpic.get().getDuration());
+
+        taskManager.deleteSubtaskPerId(first.getId());
+        optEpic = taskManager.getEpic(epic.getId());
+        assertTrue(optEpic.isPresent(), "Эпик не найден по Id.");
+
+        assertEquals(last.getStartTime(), optEpic.get().getStartTime());
+        assertEquals(Duration.ofMinutes(15), optEpic.get().getDuration());
+
+        taskManager.deleteSubtaskPerId(last.getId());
+        optEpic = taskManager.getEpic(epic.getId());
+        assertTrue(optEpic.isPresent(), "Эпик не найден по Id.");
+
+        assertEquals(TaskStatus.NEW, optEpic.get().getStatus(), "Статус эпика определен некорректно.");
+        assertNull(optEpic.get().getStartTime());
+        assertNull(optEpic.get().getEndTime());
+        assertNull(optEpic.get().getDuration());
+    }
+
     @Test
     void shouldNotAddTaskSubtaskWithNotCorrectTime() {
         epic = createDefaultEpic();
@@ -535,6 +572,212 @@ abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals(taskList.getLast(), task1);
     }
 
+    @Test
+    void shouldKeepPrioritizedTasksWithSameStartTime() {
+        LocalDateTime startTime = LocalDateTime.of(2025, 3, 1, 10, 0);
+        Task task1 = taskManager.createTask(new Task("task1", "description", TaskStatus.NEW,
+                startTime, Duration.ZERO));
+        Task task2 = taskManager.createTask(new Task("task2", "description", TaskStatus.NEW,
+                startTime, Duration.ofMinutes(30)));
+
+        List<Task> taskList = taskManager.getPrioritizedTasks();
+
+        assertEquals(2, taskList.size(), "Задачи с одинаковым началом схлопнулись.");
+        assertEquals(task1, taskList.getFirst());
+        assertEquals(task2, taskList.getLast());
+    }
+
+    @Test
+    void shouldNotAddTaskCoveringOtherTask() {
+        taskManager.createTask(new Task("task", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(10)));
+        taskManager.createTask(new Task("task", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 12, 0), Duration.ofMinutes(10)));
+
+        task = new Task("task", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 9, 0), Duration.ofMinutes(120));
+        assertThrows(ManagerAddTaskException.class, () -> taskManager.createTask(task),
+                "Создана задача, перекрывающая другую задачу.");
+
+        task = new Task("task", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 10), Duration.ofMinutes(110));
+        assertDoesNotThrow(() -> taskManager.createTask(task), "Не создана задача в свободном промежутке.");
+        assertEquals(3, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void shouldMoveTaskInPrioritizedTasksAfterUpdate() {
+        Task task1 = taskManager.createTask(new Task("task1", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(10)));
+        Task task2 = taskManager.createTask(new Task("task2", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 11, 0), Duration.ofMinutes(10)));
+
+        task1.setStartTime(LocalDateTime.of(2025, 3, 1, 11, 30));
+        taskManager.updateTask(task1);
+        List<Task> taskList = taskManager.getPrioritizedTasks();
+
+        assertEquals(2, taskList.size());
+        assertEquals(task2, taskList.getFirst());
+        assertEquals(task1, taskList.getLast());
+    }
+
+    @Test
+    void shouldReturnPagesAfterId() {
+        epic = taskManager.createEpic(createDefaultEpic());
+        List<Task> created = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            created.add(taskManager.createTask(new Task("task" + i, "description", TaskStatus.NEW,
+                    LocalDateTime.of(2025, 3, 1, 10 + i, 0), Duration.ofMinutes(10))));
+            taskManager.createSubtask(createDefaultSubtask(epic.getId()));
+        }
+
+        assertEquals(created.subList(0, 2), taskManager.getTasks(0, 2), "Первая страница задач неверна.");
+        assertEquals(created.subList(2, 4), taskManager.getTasks(created.get(1).getId(), 2),
+                "Вторая страница задач неверна.");
+        assertEquals(created.subList(4, 5), taskManager.getTasks(created.get(3).getId(), 2),
+                "Последняя страница задач неверна.");
+        assertTrue(taskManager.getTasks(created.get(4).getId(), 2).isEmpty());
+
+        taskManager.deleteTaskPerId(created.get(2).getId());
+        assertEquals(List.of(created.get(1), created.get(3)), taskManager.getTasks(created.get(0).getId(), 2),
+                "Удалённая задача попала на страницу.");
+
+        assertEquals(List.of(epic), taskManager.getEpics(0, 10));
+        assertEquals(5, taskManager.getSubtasks(epic.getId(), 10).size());
+        assertEquals(2, taskManager.getSubtasks(epic.getId(), 2).size());
+    }
+
+    @Test
+    void shouldReturnPrioritizedPagesAfterId() {
+        Task late = taskManager.createTask(new Task("late", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 12, 0), Duration.ofMinutes(10)));
+        Task early = taskManager.createTask(new Task("early", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(10)));
+        Task middle = taskManager.createTask(new Task("middle", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 11, 0), Duration.ofMinutes(10)));
+
+        assertEquals(List.of(early, middle), taskManager.getPrioritizedTasks(null, 0, 2));
+        assertEquals(List.of(late), taskManager.getPrioritizedTasks(middle.getStartTime(), middle.getId(), 2));
+
+        taskManager.deleteTaskPerId(middle.getId());
+        assertEquals(List.of(late), taskManager.getPrioritizedTasks(middle.getStartTime(), middle.getId(), 2),
+                "Страница не построена после удалённой задачи.");
+        Task unscheduled = new Task("early", "description", TaskStatus.NEW, null, null);
+        unscheduled.setId(early.getId());
+        taskManager.updateTask(unscheduled);
+        assertEquals(List.of(late), taskManager.getPrioritizedTasks(early.getStartTime(), early.getId(), 2),
+                "Страница не построена после задачи, снятой с расписания.");
+    }
+
+    @Test
+    void shouldReturnPrioritizedTasksInWindow() {
+        Task late = taskManager.createTask(new Task("late", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 12, 0), Duration.ofMinutes(10)));
+        Task early = taskManager.createTask(new Task("early", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(30)));
+        Task middle = taskManager.createTask(new Task("middle", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 11, 0), Duration.ofMinutes(10)));
+
+        LocalDateTime day = LocalDateTime.of(2025, 3, 1, 0, 0);
+        assertEquals(List.of(early, middle, late), taskManager.getPrioritizedTasks(day, day.plusDays(1)));
+        assertEquals(List.of(early, middle), taskManager.getPrioritizedTasks(day.plusMinutes(620), day.plusHours(12)),
+                "Не найдена задача, начатая до начала окна.");
+        assertEquals(List.of(middle), taskManager.getPrioritizedTasks(day.plusMinutes(630), day.plusHours(12)));
+        assertTrue(taskManager.getPrioritizedTasks(day.plusDays(1), day.plusDays(2)).isEmpty());
+        assertTrue(taskManager.getPrioritizedTasks(day.plusDays(1), day).isEmpty());
+    }
+
+    @Test
+    void shouldFindEarliestFreeSlot() {
+        taskManager.createTask(new Task("first", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(30)));
+        taskManager.createTask(new Task("second", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 45), Duration.ofMinutes(15)));
+        taskManager.createTask(new Task("third", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 12, 0), Duration.ofMinutes(60)));
+
+        LocalDateTime day = LocalDateTime.of(2025, 3, 1, 0, 0);
+        assertEquals(Optional.of(day.plusHours(9)),
+                taskManager.findFreeSlot(Duration.ofMinutes(60), day.plusHours(9), day.plusHours(18)));
+        assertEquals(Optional.of(day.plusMinutes(630)),
+                taskManager.findFreeSlot(Duration.ofMinutes(15), day.plusMinutes(615), day.plusHours(18)),
+                "Промежуток не найден после задачи, идущей в момент начала поиска.");
+        assertEquals(Optional.of(day.plusHours(11)),
+                taskManager.findFreeSlot(Duration.ofMinutes(60), day.plusHours(10), day.plusHours(18)));
+        assertEquals(Optional.of(day.plusHours(13)),
+                taskManager.findFreeSlot(Duration.ofMinutes(90), day.plusHours(10), day.plusHours(18)));
+        assertTrue(taskManager.findFreeSlot(Duration.ofMinutes(90), day.plusHours(10), day.plusHours(14)).isEmpty());
+
+        LocalDateTime start = taskManager.findFreeSlot(Duration.ofMinutes(20), day.plusHours(10), day.plusHours(18))
+                .orElseThrow();
+        assertDoesNotThrow(() -> taskManager.createTask(new Task("planned", "description", TaskStatus.NEW,
+                start, Duration.ofMinutes(20))), "Найденный промежуток занят.");
+    }
+
+    @Test
+    void shouldApplyBatch() {
+        Task first = taskManager.createTask(new Task("first", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(30)));
+        Task second = taskManager.createTask(new Task("second", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 11, 0), Duration.ofMinutes(30)));
+        epic = taskManager.createEpic(createDefaultEpic());
+
+        Task movedFirst = new Task(first);
+        movedFirst.setId(first.getId());
+        movedFirst.setStartTime(second.getStartTime());
+        Task movedSecond = new Task(second);
+        movedSecond.setId(second.getId());
+        movedSecond.setStartTime(first.getStartTime());
+        Subtask newSubtask = new Subtask("subtask", "description", TaskStatus.DONE, epic.getId(),
+                LocalDateTime.of(2025, 3, 1, 12, 0), Duration.ofMinutes(30));
+
+        List<Task> result = taskManager.applyBatch(List.of(
+                new Operation(OperationType.UPDATE, movedFirst),
+                new Operation(OperationType.UPDATE, movedSecond),
+                new Operation(OperationType.CREATE, newSubtask),
+                new Operation(OperationType.CREATE, new Task("third", "description", TaskStatus.NEW,
+                        LocalDateTime.of(2025, 3, 1, 13, 0), Duration.ofMinutes(30)))));
+
+        assertEquals(4, result.size(), "Не все операции пакета вернули результат.");
+        assertNotEquals(0, newSubtask.getId(), "Подзадаче пакета не присвоен id.");
+        assertEquals(List.of(second.getId(), first.getId(), newSubtask.getId(), result.get(3).getId()),
+                taskManager.getPrioritizedTasks().stream().map(Task::getId).toList(),
+                "Задачи пакета не поменялись местами в расписании.");
+        assertEquals(TaskStatus.DONE, taskManager.getEpic(epic.getId()).orElseThrow().getStatus(),
+                "Статус эпика не пересчитан.");
+    }
+
+    @Test
+    void shouldNotApplyBatchWithOverlapping() {
+        Task first = taskManager.createTask(new Task("first", "description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 3, 1, 10, 0), Duration.ofMinutes(30)));
+
+        List<Operation> insideBatch = List.of(
+                new Operation(OperationType.CREATE, new Task("a", "description", TaskStatus.NEW,
+                        LocalDateTime.of(2025, 3, 1, 12, 0), Duration.ofMinutes(30))),
+                new Operation(OperationType.CREATE, new Task("b", "description", TaskStatus.NEW,
+                        LocalDateTime.of(2025, 3, 1, 12, 15), Duration.ofMinutes(30))));
+        List<Operation> withSchedule = List.of(
+                new Operation(OperationType.CREATE, new Task("c", "description", TaskStatus.NEW,
+                        LocalDateTime.of(2025, 3, 1, 14, 0), Duration.ofMinutes(30))),
+                new Operation(OperationType.CREATE, new Task("d", "description", TaskStatus.NEW,
+                        LocalDateTime.of(2025, 3, 1, 10, 15), Duration.ofMinutes(30))));
+        Task missing = new Task(first);
+        missing.setId(1000);
+        List<Operation> withMissing = List.of(
+                new Operation(OperationType.CREATE, createDefaultTask()),
+                new Operation(OperationType.UPDATE, missing));
+
+        assertThrows(ManagerAddTaskException.class, () -> taskManager.applyBatch(insideBatch),
+                "Применён пакет с пересекающимися задачами.");
+        assertThrows(ManagerAddTaskException.class, () -> taskManager.applyBatch(withSchedule),
+                "Применён пакет, пересекающийся с расписанием.");
+        assertThrows(TaskNotFoundException.class, () -> taskManager.applyBatch(withMissing),
+                "Применён пакет с несуществующей задачей.");
+        assertEquals(List.of(first), taskManager.getAllTasks(), "Пакет применён частично.");
+        assertEquals(List.of(first), taskManager.getPrioritizedTasks(), "Пакет применён частично.");
+    }
+
     Task createDefaultTask() {
         int minutes = new Random().nextInt(1000);
         return new Task("task", "description", TaskStatus.NEW, LocalDateTime.now().minusMinutes(minutes),
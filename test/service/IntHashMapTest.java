@@ -0,0 +1,92 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+class IntHashMapTest {
+
+    //случайные put/remove/get/valuesAfter сверяются с TreeMap. Ключи из узкого диапазона дают плотные ряды
+    //последовательных id и удаления с переходом через конец таблицы, ключи, кратные 1 << 16, - коллизии хэша
+    @Test
+    void shouldBehaveLikeTreeMapUnderRandomOperations() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            IntHashMap<String> map = new IntHashMap<>();
+            TreeMap<Integer, String> expected = new TreeMap<>();
+            for (int step = 0; step < 20_000; step++) {
+                int key = randomKey(random);
+                int operation = random.nextInt(100);
+                if (operation < 45) {
+                    String value = "v" + step;
+                    assertEquals(expected.put(key, value), map.put(key, value), "put вернул другое значение.");
+                } else if (operation < 80) {
+                    assertEquals(expected.remove(key), map.remove(key), "remove вернул другое значение.");
+                } else if (operation < 95) {
+                    assertEquals(expected.get(key), map.get(key), "get вернул другое значение.");
+                    assertEquals(expected.containsKey(key), map.containsKey(key), "containsKey ошибся.");
+                } else if (operation < 99) {
+                    int limit = 1 + random.nextInt(50);
+                    assertEquals(page(expected, key, limit), map.valuesAfter(key, limit),
+                            "valuesAfter выдал другую страницу.");
+                } else if (random.nextInt(10) == 0) {
+                    map.clear();
+                    expected.clear();
+                } else {
+                    map.ensureCapacity(expected.size() + random.nextInt(1000));
+                }
+                assertEquals(expected.size(), map.size(), "Размер разошёлся на шаге " + step + ".");
+            }
+            assertEquals(new HashMap<>(expected), new HashMap<>(map), "Содержимое разошлось, seed " + seed + ".");
+            Map<Integer, String> iterated = new HashMap<>();
+            map.forEach(iterated::put);
+            assertEquals(expected, new TreeMap<>(iterated), "forEach обошёл не все записи.");
+            assertEquals(new ArrayList<>(expected.values()), map.valuesAfter(Integer.MIN_VALUE, Integer.MAX_VALUE),
+                    "Полная выдача не по возрастанию ключа.");
+        }
+    }
+
+    @Test
+    void shouldRemoveFromDenseRunOfSequentialIds() {
+        IntHashMap<String> map = new IntHashMap<>();
+        for (int id = 1; id <= 100_000; id++) {
+            map.put(id, "v" + id);
+        }
+        for (int id = 1; id <= 100_000; id += 2) {
+            assertEquals("v" + id, map.remove(id), "Удалено не то значение.");
+        }
+        assertEquals(50_000, map.size(), "Неверный размер после удаления.");
+        for (int id = 1; id <= 100_000; id++) {
+            assertEquals((id % 2 == 0) ? "v" + id : null, map.get(id), "Запись " + id + " потеряна.");
+        }
+    }
+
+    private static int randomKey(Random random) {
+        int kind = random.nextInt(10);
+        if (kind < 6) {
+            return random.nextInt(300);
+        }
+        if (kind < 9) {
+            return random.nextInt(8) << 16 | random.nextInt(4);
+        }
+        return random.nextInt();
+    }
+
+    private static List<String> page(TreeMap<Integer, String> map, int afterId, int limit) {
+        List<String> page = new ArrayList<>();
+        for (String value : map.tailMap(afterId, false).values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(value);
+        }
+        return page;
+    }
+}